@@ -0,0 +1,304 @@
+package MorseCodeConverter;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.Mixer;
+import javax.sound.sampled.SourceDataLine;
+
+/**
+ * Keeps output lines of one format open between transmissions, since opening a
+ * line can take longer than a short message takes to play. Lines are opened and
+ * warmed up (by playing a moment of silence) ahead of time, lent out by acquire
+ * and given back by release. A line that can't be opened, or that is given back
+ * closed or broken, is reopened on a background thread, trying again with a
+ * growing delay until the device is back.
+ *
+ * The time each acquire took is recorded, so the cost of getting a line (which
+ * should be close to nothing once the pool is warm) can be watched.
+ *
+ * @author Jacob White
+ */
+public final class AudioLinePool implements AutoCloseable {
+    //Silence played through each new line to warm it up (msec)
+    private static final int WARM_UP_MILLIS = 20;
+    //Delays before trying to reopen a line again (msec)
+    private static final long FIRST_RETRY_MILLIS = 100;
+    private static final long MAX_RETRY_MILLIS = 5000;
+    //Longest acquire waits for a line before checking if the pool was closed (msec)
+    private static final long CLOSED_CHECK_MILLIS = 100;
+
+    private final AudioFormat format;
+    private final Mixer.Info mixer;
+    private final int size;
+    private final int bufferSize;
+    private final LinkedBlockingDeque<SourceDataLine> idle = new LinkedBlockingDeque<>();
+    private final ScheduledExecutorService reopener;
+    //Lines open, being opened or waiting to be reopened
+    private int lines = 0;
+    private volatile boolean closed = false;
+
+    private long acquisitions = 0;
+    private long totalAcquireNanos = 0;
+    private long maxAcquireNanos = 0;
+    private long lastAcquireNanos = 0;
+
+    /**
+     * @param format format of the lines
+     * @param size most lines open at once
+     */
+    public AudioLinePool(AudioFormat format, int size) {
+        this(format, size, AudioSystem.NOT_SPECIFIED, null);
+    }
+
+    /**
+     * @param format format of the lines
+     * @param size most lines open at once
+     * @param bufferSize size of each line's buffer in bytes, or
+     * AudioSystem.NOT_SPECIFIED for the default
+     * @param mixer the device to open the lines on, or null for the default
+     */
+    public AudioLinePool(AudioFormat format, int size, int bufferSize, Mixer.Info mixer) {
+        this.format = format;
+        this.mixer = mixer;
+        this.size = size;
+        this.bufferSize = bufferSize;
+        this.reopener = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "AudioLinePool reopener");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Opens and warms up lines until the pool is full. Lines that can't be
+     * opened now are reopened in the background.
+     *
+     * @return the number of lines opened
+     */
+    public int warmUp() {
+        int opened = 0;
+        while (reserveLine()) {
+            try {
+                addIdle(openLine());
+                opened++;
+            }
+            catch (LineUnavailableException | RuntimeException e) {
+                scheduleReopen(FIRST_RETRY_MILLIS);
+            }
+        }
+        return opened;
+    }
+
+    /**
+     * Lends out an open line, opening a new one if none are idle and the pool
+     * isn't full, or else waiting for one to be released.
+     *
+     * @return an open line, stopped and empty
+     * @throws LineUnavailableException if a new line is needed and can't be opened
+     * @throws InterruptedException if interrupted while waiting for a line
+     * @throws IllegalStateException if the pool has been closed
+     */
+    public SourceDataLine acquire() throws LineUnavailableException, InterruptedException {
+        long start = System.nanoTime();
+        checkOpen();
+        SourceDataLine line = idle.poll();
+        if (line == null && reserveLine()) {
+            try {
+                line = openLine();
+            }
+            catch (LineUnavailableException | RuntimeException e) {
+                scheduleReopen(FIRST_RETRY_MILLIS);
+                throw e;
+            }
+        }
+        while (line == null) {
+            checkOpen();
+            line = idle.poll(CLOSED_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        recordAcquire(System.nanoTime() - start);
+        return line;
+    }
+
+    /**
+     * Gives a line back to the pool. If it has been closed, a new one is opened
+     * in the background to replace it.
+     *
+     * @param line a line from acquire
+     */
+    public void release(SourceDataLine line) {
+        if (closed) {
+            line.close();
+        }
+        else if (line.isOpen()) {
+            line.stop();
+            line.flush();
+            idle.offer(line);
+        }
+        else {
+            scheduleReopen(0);
+        }
+    }
+
+    /**
+     * Closes a line that isn't working (e.g. after an error while playing) and
+     * opens a new one in the background to replace it.
+     *
+     * @param line a line from acquire
+     */
+    public void invalidate(SourceDataLine line) {
+        line.close();
+        if (!closed) {
+            scheduleReopen(0);
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Pool closed");
+        }
+    }
+
+    /**
+     * Puts a new line with the idle ones, or closes it if the pool has been
+     * closed (even while the line was being opened).
+     */
+    private void addIdle(SourceDataLine line) {
+        idle.offer(line);
+        //close sets closed before closing the idle lines, so one of the two closes it
+        if (closed && idle.remove(line)) {
+            line.close();
+        }
+    }
+
+    /**
+     * Takes up a place for a new line, if the pool isn't full.
+     */
+    private synchronized boolean reserveLine() {
+        if (closed || lines >= size) {
+            return false;
+        }
+        lines++;
+        return true;
+    }
+
+    /**
+     * Opens a new line and warms it up.
+     */
+    private SourceDataLine openLine() throws LineUnavailableException {
+        SourceDataLine line = AudioSystem.getSourceDataLine(format, mixer);
+        if (bufferSize == AudioSystem.NOT_SPECIFIED) {
+            line.open(format);
+        }
+        else {
+            line.open(format, bufferSize);
+        }
+        //Play a moment of silence so the device is running before the first message
+        byte[] silence = new byte[format.getFrameSize() * Math.round(format.getFrameRate() * WARM_UP_MILLIS / 1000)];
+        try {
+            line.start();
+            line.write(silence, 0, silence.length);
+            line.drain();
+            line.stop();
+        }
+        catch (RuntimeException e) {
+            line.close();
+            throw e;
+        }
+        return line;
+    }
+
+    /**
+     * Opens a line on the background thread after a delay, trying again with a
+     * longer delay until it opens or the pool is closed.
+     */
+    private void scheduleReopen(long delayMillis) {
+        if (closed) {
+            return;
+        }
+        try {
+            reopener.schedule(() -> {
+                if (closed) {
+                    return;
+                }
+                try {
+                    addIdle(openLine());
+                }
+                catch (LineUnavailableException | RuntimeException e) {
+                    scheduleReopen(Math.min(Math.max(2 * delayMillis, FIRST_RETRY_MILLIS), MAX_RETRY_MILLIS));
+                }
+            }, delayMillis, TimeUnit.MILLISECONDS);
+        }
+        catch (RejectedExecutionException e) {
+            //Closed since the check above; nothing to reopen
+        }
+    }
+
+    private synchronized void recordAcquire(long nanos) {
+        acquisitions++;
+        totalAcquireNanos += nanos;
+        maxAcquireNanos = Math.max(maxAcquireNanos, nanos);
+        lastAcquireNanos = nanos;
+    }
+
+    /**
+     * @return the format of the lines
+     */
+    public AudioFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * @return the number of lines waiting to be acquired
+     */
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * @return the number of times a line was acquired
+     */
+    public synchronized long getAcquisitions() {
+        return acquisitions;
+    }
+
+    /**
+     * @return how long the last acquire took, in milliseconds
+     */
+    public synchronized double getLastAcquireMillis() {
+        return lastAcquireNanos / 1e6;
+    }
+
+    /**
+     * @return how long the slowest acquire took, in milliseconds
+     */
+    public synchronized double getMaxAcquireMillis() {
+        return maxAcquireNanos / 1e6;
+    }
+
+    /**
+     * @return how long an acquire took on average, in milliseconds
+     */
+    public synchronized double getAverageAcquireMillis() {
+        return (acquisitions == 0) ? 0 : totalAcquireNanos / 1e6 / acquisitions;
+    }
+
+    /**
+     * Closes every idle line and stops reopening lines. Lines that are still
+     * acquired are closed when they are released.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        reopener.shutdownNow();
+        SourceDataLine line;
+        while ((line = idle.poll()) != null) {
+            line.close();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package MorseCodeConverter;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A message in a BroadcastQueue, returned by add so it can be checked on or
+ * cancelled later.
+ *
+ * @author Jacob White
+ */
+public final class BroadcastMessage {
+    private final String input;
+    private final int priority;
+    private final long repeatMillis;
+    //Order added, to keep messages of the same priority first come first served
+    final long sequence;
+
+    //Everything below is guarded by the queue
+    long dueFrame;
+    volatile int playCount = 0;
+    volatile boolean cancelled = false;
+    //Samples from the last time the message was rendered (or are being), and the settings they were rendered at
+    CompletableFuture<ByteBuffer> samples = null;
+    String renderKey = null;
+
+    BroadcastMessage(String input, int priority, long repeatMillis, long sequence, long dueFrame) {
+        this.input = input;
+        this.priority = priority;
+        this.repeatMillis = repeatMillis;
+        this.sequence = sequence;
+        this.dueFrame = dueFrame;
+    }
+
+    /**
+     * @return the Morse code String (with starting & ending signals)
+     */
+    public String getInput() {
+        return input;
+    }
+
+    /**
+     * @return the priority; of the messages that are due, the highest goes first
+     */
+    public int getPriority() {
+        return priority;
+    }
+
+    /**
+     * @return time from the start of one broadcast to the start of the next
+     * (msec), or 0 if it is only sent once
+     */
+    public long getRepeatMillis() {
+        return repeatMillis;
+    }
+
+    /**
+     * @return the number of times the message has gone on air
+     */
+    public int getPlayCount() {
+        return playCount;
+    }
+
+    /**
+     * @return true if the message was cancelled or, if it doesn't repeat, has
+     * gone on air, so it won't be sent again
+     */
+    public boolean isFinished() {
+        return cancelled || (repeatMillis == 0 && playCount > 0);
+    }
+}
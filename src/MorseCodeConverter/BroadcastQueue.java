@@ -0,0 +1,368 @@
+package MorseCodeConverter;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+
+/**
+ * Plays a queue of messages back to back on one line that stays open for as
+ * long as the queue runs, e.g. for a beacon. The line is kept fed with a single
+ * stream of samples, with silence wherever no message is due, so there is no
+ * gap or line opening between messages. While one message plays, the next is
+ * rendered (or read from the TextToAudio's render cache) on another thread.
+ *
+ * Messages are scheduled on the line's own sample clock rather than the system
+ * clock, so a repeating message starts exactly a multiple of its repeat
+ * interval after it first went on air, and the duty cycle stays the same
+ * however long the queue runs. If a slot is missed because another message was
+ * still playing, the message is sent as soon as the line is free and then goes
+ * back to its own slots.
+ *
+ * Of the messages that are due, the one with the highest priority is sent
+ * next, then the one that has been due longest. A message that becomes due
+ * while another is on air waits for it to finish; cancelling a message stops
+ * it from being sent again but lets it finish if it is on air. A message that
+ * isn't rendered yet when it is due (e.g. one just added, or after the
+ * settings change) waits with the line playing silence until it is, so the
+ * line never runs dry.
+ *
+ * @author Jacob White
+ */
+public final class BroadcastQueue implements AutoCloseable {
+    private final TextToAudio tta;
+    private final AudioFormat format;
+    private final float framesPerMilli;
+    private final List<BroadcastMessage> messages = new ArrayList<>();
+    //Kept off the public interface, so only the feeder takes samples from the queue
+    private final SampleSource source = this::render;
+    private long nextSequence = 0;
+
+    private SourceDataLine line = null;
+    private LineFeeder feeder = null;
+
+    //Only used by the feeder's thread
+    private ByteBuffer current = null;
+
+    //Frames of samples given to the line, and how many were messages
+    private volatile long framesProduced = 0;
+    private volatile long framesOnAir = 0;
+    private volatile long messagesSent = 0;
+    private volatile int failures = 0;
+
+    /**
+     * @param tta the settings messages are rendered at. The sample rate is the
+     * one set when the queue is created; the other settings are read each time
+     * a message is rendered, and the line's buffer length and target fill when
+     * the queue is started.
+     */
+    public BroadcastQueue(TextToAudio tta) {
+        this.tta = tta;
+        this.format = tta.getFormat();
+        this.framesPerMilli = format.getFrameRate() / 1000;
+    }
+
+    /**
+     * Opens the line and starts broadcasting (silence, until a message is added).
+     * A queue can only be started once.
+     *
+     * @throws LineUnavailableException if a line can't be opened
+     */
+    public synchronized void start() throws LineUnavailableException {
+        if (feeder != null) {
+            throw new IllegalStateException("Already started");
+        }
+        line = tta.openLine(format);
+        feeder = new LineFeeder(line, source, tta.getTargetFill(line));
+        feeder.start();
+    }
+
+    /**
+     * Adds a message to be sent once, as soon as the line is free.
+     *
+     * @param input the Morse code String (with starting & ending signals)
+     * @return the message, to check on or cancel it
+     * @throws MorseCodeConverter.InvalidTransmissionException
+     */
+    public BroadcastMessage add(String input) throws InvalidTransmissionException {
+        return add(input, 0, 0);
+    }
+
+    /**
+     * Adds a message to be sent as soon as the line is free and no message of a
+     * higher priority is due.
+     *
+     * @param input the Morse code String (with starting & ending signals)
+     * @param priority higher goes first
+     * @param repeatMillis time from the start of one broadcast to the start of
+     * the next (msec), or 0 to send it once
+     * @return the message, to check on or cancel it
+     * @throws MorseCodeConverter.InvalidTransmissionException
+     */
+    public BroadcastMessage add(String input, int priority, long repeatMillis) throws InvalidTransmissionException {
+        if (repeatMillis < 0) {
+            throw new IllegalArgumentException("Repeat interval must not be negative: " + repeatMillis);
+        }
+        //Find the transmission now, so a bad message is rejected here instead of on the feeder's thread
+        tta.compileTimeline(input);
+        synchronized (this) {
+            BroadcastMessage message = new BroadcastMessage(input, priority, repeatMillis, nextSequence++, framesProduced);
+            messages.add(message);
+            //Render it now, so it's ready by the time the line is free
+            prepare(message);
+            return message;
+        }
+    }
+
+    /**
+     * Stops a message from being sent again. If it is on air, it finishes.
+     *
+     * @param message the message
+     * @return true if it was still in the queue
+     */
+    public synchronized boolean cancel(BroadcastMessage message) {
+        message.cancelled = true;
+        message.samples = null;
+        return messages.remove(message);
+    }
+
+    /**
+     * Cancels every message in the queue.
+     */
+    public synchronized void clear() {
+        for (BroadcastMessage message : messages) {
+            message.cancelled = true;
+            message.samples = null;
+        }
+        messages.clear();
+    }
+
+    /**
+     * @return the messages that will be sent (again), in the order they were added
+     */
+    public synchronized List<BroadcastMessage> getMessages() {
+        return new ArrayList<>(messages);
+    }
+
+    /**
+     * Fills the line's buffer with the message on air, or silence until the
+     * next one is due. Called by the feeder's thread.
+     */
+    private int render(byte[] buf, int offset, int length) {
+        int filled = 0;
+        while (filled < length) {
+            if (current != null && current.hasRemaining()) {
+                int count = Math.min(length - filled, current.remaining());
+                current.get(buf, offset + filled, count);
+                filled += count;
+                framesProduced += count;
+                framesOnAir += count;
+                continue;
+            }
+            current = null;
+            long frame = framesProduced;
+            long silence = startNext(frame);
+            if (current == null) {
+                int count = (int) Math.min(length - filled, silence);
+                Arrays.fill(buf, offset + filled, offset + filled + count, (byte) 0);
+                filled += count;
+                framesProduced += count;
+            }
+        }
+        return filled;
+    }
+
+    /**
+     * Puts the next message on air if one is due at the frame and its samples
+     * are ready, and starts rendering the one after it if it isn't already.
+     * Never waits for a render, since it runs on the feeder's thread.
+     *
+     * @return frames of silence until a message is due or ready, if none is
+     * put on air now
+     */
+    private synchronized long startNext(long frame) {
+        BroadcastMessage message = pick(frame);
+        if (message == null) {
+            return Long.MAX_VALUE;
+        }
+        //Render it again if the settings have changed
+        prepare(message);
+        if (message.dueFrame > frame) {
+            return message.dueFrame - frame;
+        }
+        if (!message.samples.isDone()) {
+            //Keep the line fed with silence until it has rendered, instead of waiting with it running dry
+            return Long.MAX_VALUE;
+        }
+        ByteBuffer samples;
+        try {
+            samples = message.samples.join();
+        }
+        catch (CompletionException e) {
+            //Can't be rendered (e.g. the settings were changed to invalid ones); drop it
+            failures++;
+            cancel(message);
+            return 0;
+        }
+        message.playCount++;
+        messagesSent++;
+        if (message.getRepeatMillis() == 0) {
+            messages.remove(message);
+            message.samples = null;
+        }
+        else {
+            //Slots are counted from when it first went on air
+            if (message.playCount == 1) {
+                message.dueFrame = frame;
+            }
+            //Next slot after this one, skipping any it has already missed
+            long period = Math.max(1, Math.round(message.getRepeatMillis() * (double) framesPerMilli));
+            message.dueFrame += period;
+            if (message.dueFrame <= frame) {
+                message.dueFrame += ((frame - message.dueFrame) / period + 1) * period;
+            }
+        }
+        current = samples.duplicate();
+        //Make sure whatever would go on air when this one is over is rendered by then
+        BroadcastMessage after = pick(frame + current.remaining());
+        if (after != null) {
+            prepare(after);
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the message that goes on air next if the line is free at the
+     * frame: the highest priority of those due, or else the one due soonest.
+     */
+    private BroadcastMessage pick(long frame) {
+        BroadcastMessage best = null;
+        for (BroadcastMessage message : messages) {
+            if (best == null || goesBefore(message, best, frame)) {
+                best = message;
+            }
+        }
+        return best;
+    }
+
+    private static boolean goesBefore(BroadcastMessage a, BroadcastMessage b, long frame) {
+        boolean aDue = a.dueFrame <= frame;
+        boolean bDue = b.dueFrame <= frame;
+        if (aDue != bDue) {
+            return aDue;
+        }
+        if (aDue && a.getPriority() != b.getPriority()) {
+            return a.getPriority() > b.getPriority();
+        }
+        if (a.dueFrame != b.dueFrame) {
+            return a.dueFrame < b.dueFrame;
+        }
+        if (a.getPriority() != b.getPriority()) {
+            return a.getPriority() > b.getPriority();
+        }
+        return a.sequence < b.sequence;
+    }
+
+    /**
+     * Starts rendering the message on another thread, unless it has already
+     * been rendered (or is being rendered) at the current settings. The
+     * samples are kept with the message, so a repeating message is only
+     * rendered again if the settings change. Called with the queue locked.
+     */
+    private void prepare(BroadcastMessage message) {
+        //The key and the samples both come from the same settings, even if they change meanwhile
+        TextToAudio settings = tta.snapshot();
+        float rate = format.getSampleRate();
+        String key;
+        try {
+            key = settings.renderKey(message.getInput(), rate);
+        }
+        catch (InvalidTransmissionException e) {
+            CompletableFuture<ByteBuffer> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            message.samples = failed;
+            message.renderKey = null;
+            return;
+        }
+        if (message.samples != null && key.equals(message.renderKey)) {
+            return;
+        }
+        message.renderKey = key;
+        message.samples = CompletableFuture.supplyAsync(() -> {
+            try {
+                return settings.renderSamples(message.getInput(), rate);
+            }
+            catch (InvalidTransmissionException e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    /**
+     * @return fraction of the time since the queue started that a message was on air
+     */
+    public double getDutyCycle() {
+        long produced = framesProduced;
+        return (produced == 0) ? 0 : (double) framesOnAir / produced;
+    }
+
+    /**
+     * @return time since the queue started (msec), by the samples given to the line
+     */
+    public long getElapsedMillis() {
+        return Math.round(framesProduced / framesPerMilli);
+    }
+
+    /**
+     * @return the number of times a message has gone on air
+     */
+    public long getMessagesSent() {
+        return messagesSent;
+    }
+
+    /**
+     * @return the number of messages dropped because they couldn't be rendered
+     */
+    public int getFailures() {
+        return failures;
+    }
+
+    /**
+     * @return the number of times the line ran out of samples, or 0 if it
+     * hasn't started
+     */
+    public synchronized int getUnderruns() {
+        return (feeder == null) ? 0 : feeder.getUnderruns();
+    }
+
+    /**
+     * Stops broadcasting, cutting off whatever is on air, and closes the line.
+     * If interrupted while waiting for the feeder to stop, the line is closed
+     * anyway and the thread's interrupt flag is set again.
+     */
+    @Override
+    public void close() {
+        SourceDataLine l;
+        synchronized (this) {
+            l = line;
+            line = null;
+        }
+        if (l == null) {
+            return;
+        }
+        feeder.cancel();
+        try {
+            feeder.await();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        l.stop();
+        l.close();
+    }
+}
@@ -0,0 +1,330 @@
+package MorseCodeConverter;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A table pairing letters (Unicode code points) with their Morse code, compiled
+ * into lookup structures for both directions when it is created:
+ *
+ * Text to Morse uses a perfect hash of the code point (a multiplier is searched
+ * for until no two letters share a slot), so every lookup is one multiply, one
+ * shift and one comparison, regardless of the size of the table.
+ *
+ * Morse to text packs each Morse letter into a key (a leading 1 bit followed by
+ * one bit per element, 0 for a dot and 1 for a dash) that directly indexes an
+ * array of letters.
+ *
+ * Tables can be loaded from a text file with one letter and its code per line,
+ * e.g. "A .-". Letters may also be written as U+XXXX (e.g. U+0020 for a space),
+ * lines starting with # are comments, and the codes "|" and "/" are word
+ * separators. If a letter (or code) appears more than once, the first one is
+ * used for encoding (or decoding).
+ *
+ * @author Jacob White
+ */
+public final class CodeTable {
+    //Longest Morse letter (in dots and dashes) that a table can contain
+    public static final int MAX_CODE_LENGTH = 12;
+    //Folder of the tables that come with the converter
+    private static final String RESOURCE_FOLDER = "codetables/";
+
+    private final String name;
+    private final int maxCodeLength;
+
+    //Perfect hash of letter -> Morse code
+    private final int[] hashedLetters;
+    private final String[] hashedCodes;
+    private final int hashMultiplier;
+    private final int hashShift;
+
+    //Letter for each bit-packed Morse key, or -1
+    private final int[] decodeTable;
+    //Letter for each single-symbol code other than a dot or dash (word separators), or -1
+    private final int[] symbolTable;
+
+    private CodeTable(String name, int[] letters, String[] codes) {
+        this.name = name;
+
+        int longest = 0;
+        int symbolSize = 0;
+        for (String code: codes) {
+            if (morseKey(code) > 0) {
+                longest = Math.max(longest, code.length());
+            }
+            else {
+                symbolSize = Math.max(symbolSize, code.charAt(0) + 1);
+            }
+        }
+        maxCodeLength = longest;
+
+        decodeTable = new int[2 << longest];
+        Arrays.fill(decodeTable, -1);
+        symbolTable = new int[symbolSize];
+        Arrays.fill(symbolTable, -1);
+        for (int i = 0; i < letters.length; i++) {
+            int key = morseKey(codes[i]);
+            if (key > 0) {
+                if (decodeTable[key] < 0) {
+                    decodeTable[key] = letters[i];
+                }
+            }
+            else if (symbolTable[codes[i].charAt(0)] < 0) {
+                symbolTable[codes[i].charAt(0)] = letters[i];
+            }
+        }
+
+        //Keep only the first code for each letter
+        int[] distinct = new int[letters.length];
+        String[] distinctCodes = new String[codes.length];
+        int count = 0;
+        for (int i = 0; i < letters.length; i++) {
+            boolean seen = false;
+            for (int j = 0; j < count && !seen; j++) {
+                seen = (distinct[j] == letters[i]);
+            }
+            if (!seen) {
+                distinct[count] = letters[i];
+                distinctCodes[count] = codes[i];
+                count++;
+            }
+        }
+
+        //Search for a multiplier that sends every letter to its own slot,
+        //doubling the number of slots whenever it takes too long to find one
+        int bits = 1;
+        while ((1 << bits) < 2 * count) {
+            bits++;
+        }
+        int multiplier = 0x9E3779B1;
+        int[] slots = placeLetters(distinct, count, multiplier, bits);
+        for (int attempt = 1; slots == null; attempt++) {
+            multiplier += 0x6A09E668;
+            if (attempt % 64 == 0) {
+                bits++;
+            }
+            slots = placeLetters(distinct, count, multiplier, bits);
+        }
+        hashMultiplier = multiplier;
+        hashShift = 32 - bits;
+        hashedLetters = new int[1 << bits];
+        hashedCodes = new String[1 << bits];
+        Arrays.fill(hashedLetters, -1);
+        for (int i = 0; i < count; i++) {
+            hashedLetters[slots[i]] = distinct[i];
+            hashedCodes[slots[i]] = distinctCodes[i];
+        }
+    }
+
+    /**
+     * Hashes each letter into a table of 2^bits slots.
+     *
+     * @return the slot of each letter, or null if two letters collide
+     */
+    private static int[] placeLetters(int[] letters, int count, int multiplier, int bits) {
+        boolean[] used = new boolean[1 << bits];
+        int[] slots = new int[count];
+        for (int i = 0; i < count; i++) {
+            int slot = (letters[i] * multiplier) >>> (32 - bits);
+            if (used[slot]) {
+                return null;
+            }
+            used[slot] = true;
+            slots[i] = slot;
+        }
+        return slots;
+    }
+
+    /**
+     * Creates a table from parallel arrays of letters and Morse code, where the
+     * letter and code at the same index are paired.
+     *
+     * @param name name of the table
+     * @param letters letters (each a single code point)
+     * @param codes Morse code for each letter
+     * @return the compiled table
+     * @throws InvalidArraysException if the arrays are different lengths
+     */
+    public static CodeTable fromArrays(String name, String[] letters, String[] codes) throws InvalidArraysException {
+        if (letters.length != codes.length) {
+            throw new InvalidArraysException(letters.length, codes.length);
+        }
+        return compile(name, letters, codes);
+    }
+
+    /**
+     * Creates a table from parallel arrays of letters and Morse code, pairing
+     * as many entries as both arrays have.
+     */
+    static CodeTable compile(String name, String[] letters, String[] codes) {
+        int length = Math.min(letters.length, codes.length);
+        int[] codePoints = new int[length];
+        for (int i = 0; i < length; i++) {
+            codePoints[i] = letters[i].codePointAt(0);
+            if (!isValidCode(codes[i])) {
+                throw new IllegalArgumentException("Invalid Morse code " + codes[i]);
+            }
+        }
+        return new CodeTable(name, codePoints, Arrays.copyOf(codes, length));
+    }
+
+    /**
+     * Loads one of the tables that come with the converter (e.g. "Cyrillic",
+     * "Greek" or "ExtendedLatin").
+     *
+     * @param name name of the table
+     * @return the compiled table
+     * @throws IOException if there is no such table or it can't be read
+     */
+    public static CodeTable load(String name) throws IOException {
+        InputStream in = CodeTable.class.getResourceAsStream(RESOURCE_FOLDER + name + ".txt");
+        if (in == null) {
+            throw new IOException("No code table named " + name);
+        }
+        try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            return read(name, reader);
+        }
+    }
+
+    /**
+     * Reads a table from a text file in the format described above.
+     *
+     * @param name name of the table
+     * @param in the table file
+     * @return the compiled table
+     * @throws IOException if the file can't be read or a line is invalid
+     */
+    public static CodeTable read(String name, Reader in) throws IOException {
+        BufferedReader reader = new BufferedReader(in);
+        int[] letters = new int[64];
+        String[] codes = new String[64];
+        int count = 0;
+        int lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] parts = line.split("\\s+");
+            if (parts.length != 2) {
+                throw new IOException(name + " line " + lineNumber + ": expected a letter and its Morse code");
+            }
+            int letter;
+            if (parts[0].startsWith("U+") && parts[0].length() > 2) {
+                try {
+                    letter = Integer.parseInt(parts[0].substring(2), 16);
+                }
+                catch (NumberFormatException e) {
+                    throw new IOException(name + " line " + lineNumber + ": invalid code point " + parts[0]);
+                }
+            }
+            else if (parts[0].codePointCount(0, parts[0].length()) == 1) {
+                letter = parts[0].codePointAt(0);
+            }
+            else {
+                throw new IOException(name + " line " + lineNumber + ": more than one letter in " + parts[0]);
+            }
+            if (!isValidCode(parts[1])) {
+                throw new IOException(name + " line " + lineNumber + ": invalid Morse code " + parts[1]);
+            }
+            if (count == letters.length) {
+                letters = Arrays.copyOf(letters, count * 2);
+                codes = Arrays.copyOf(codes, count * 2);
+            }
+            letters[count] = letter;
+            codes[count] = parts[1];
+            count++;
+        }
+        return new CodeTable(name, Arrays.copyOf(letters, count), Arrays.copyOf(codes, count));
+    }
+
+    /**
+     * Checks that a code is either dots and dashes (at most MAX_CODE_LENGTH) or
+     * a single word separator symbol.
+     */
+    private static boolean isValidCode(String code) {
+        return morseKey(code) > 0 || code.equals("|") || code.equals("/");
+    }
+
+    /**
+     * Packs a Morse letter into a single int: a leading 1 bit followed by one bit
+     * per element (0 for a dot, 1 for a dash), e.g. ".-" becomes 0b110.
+     * Returns -1 if the code contains anything other than dots and dashes or is
+     * longer than MAX_CODE_LENGTH.
+     *
+     * @param code Morse letter
+     * @return the bit-packed key, or -1
+     */
+    public static int morseKey(CharSequence code) {
+        if (code.length() == 0 || code.length() > MAX_CODE_LENGTH) {
+            return -1;
+        }
+        int key = 1;
+        for (int i = 0; i < code.length(); i++) {
+            switch (code.charAt(i)) {
+                case '.':
+                    key = key << 1;
+                    break;
+                case '-':
+                    key = (key << 1) | 1;
+                    break;
+                default:
+                    return -1;
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Returns the Morse code of a letter.
+     *
+     * @param codePoint the letter
+     * @return the Morse code, or null if the table doesn't contain the letter
+     */
+    public String encode(int codePoint) {
+        int slot = (codePoint * hashMultiplier) >>> hashShift;
+        return (hashedLetters[slot] == codePoint) ? hashedCodes[slot] : null;
+    }
+
+    /**
+     * Returns the letter for a bit-packed Morse key (see morseKey).
+     *
+     * @param key bit-packed Morse letter
+     * @return the letter, or -1 if there is none
+     */
+    public int decode(int key) {
+        return (key > 0 && key < decodeTable.length) ? decodeTable[key] : -1;
+    }
+
+    /**
+     * Returns the letter for a single symbol other than a dot or dash (i.e. a
+     * word separator).
+     *
+     * @param symbol the symbol
+     * @return the letter, or -1 if there is none
+     */
+    public int decodeSymbol(char symbol) {
+        return (symbol < symbolTable.length) ? symbolTable[symbol] : -1;
+    }
+
+    /**
+     * @return the name of the table
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the length of the longest Morse letter in the table
+     */
+    public int getMaxCodeLength() {
+        return maxCodeLength;
+    }
+}
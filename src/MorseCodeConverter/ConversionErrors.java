@@ -0,0 +1,101 @@
+package MorseCodeConverter;
+
+import java.util.Arrays;
+
+/**
+ * Collects the invalid letters found by a lenient conversion in TextToMorse,
+ * which puts a replacement letter in the output and carries on instead of
+ * throwing an InvalidCharacterException. Only the index of each invalid letter
+ * in the input is kept, in a growing int array.
+ *
+ * Each conversion should be given its own ConversionErrors (it isn't
+ * thread-safe), though one can be cleared and reused for the next message.
+ *
+ * @author Jacob White
+ */
+public final class ConversionErrors {
+    private final int replacement;
+    private int[] offsets = new int[8];
+    private int count = 0;
+
+    /**
+     * @param replacement letter (code point) written in place of each invalid
+     * letter. When converting text to Morse code, its Morse code is written, or
+     * the error signal "........" if it has none.
+     */
+    public ConversionErrors(int replacement) {
+        this.replacement = replacement;
+    }
+
+    /**
+     * @return the letter written in place of each invalid letter
+     */
+    public int getReplacement() {
+        return replacement;
+    }
+
+    /**
+     * Records an invalid letter.
+     *
+     * @param offset index of the letter in the input
+     */
+    void add(int offset) {
+        if (count == offsets.length) {
+            offsets = Arrays.copyOf(offsets, count * 2);
+        }
+        offsets[count++] = offset;
+    }
+
+    /**
+     * Records every invalid letter found by another conversion, after the ones
+     * already recorded.
+     *
+     * @param other errors from a later part of the input
+     */
+    void addAll(ConversionErrors other) {
+        if (count + other.count > offsets.length) {
+            offsets = Arrays.copyOf(offsets, Math.max(count + other.count, count * 2));
+        }
+        System.arraycopy(other.offsets, 0, offsets, count, other.count);
+        count += other.count;
+    }
+
+    /**
+     * @return the number of invalid letters
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @return true if every letter was converted
+     */
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * @param i which invalid letter (0 for the first)
+     * @return index of the invalid letter in the input
+     */
+    public int getOffset(int i) {
+        if (i >= count) {
+            throw new IndexOutOfBoundsException("Error " + i + " of " + count);
+        }
+        return offsets[i];
+    }
+
+    /**
+     * @return the index in the input of each invalid letter, in order
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(offsets, count);
+    }
+
+    /**
+     * Forgets all invalid letters so this can be reused.
+     */
+    public void clear() {
+        count = 0;
+    }
+}
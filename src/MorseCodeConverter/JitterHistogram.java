@@ -0,0 +1,101 @@
+package MorseCodeConverter;
+
+/**
+ * Counts how late each event of a KeyerScheduler session was, in buckets that
+ * double in width: under 1 microsecond, 1-2, 2-4, 4-8 and so on, with the last
+ * bucket holding everything longer.
+ *
+ * @author Jacob White
+ */
+public final class JitterHistogram {
+    public static final int BUCKETS = 24;
+
+    private final long[] counts = new long[BUCKETS];
+    private long count = 0;
+    private long totalNanos = 0;
+    private long maxNanos = 0;
+
+    /**
+     * Records how late an event was.
+     *
+     * @param lateNanos time from the deadline to the event
+     */
+    public synchronized void record(long lateNanos) {
+        long micros = Math.max(0, lateNanos / 1000);
+        int bucket = (micros == 0) ? 0 : 64 - Long.numberOfLeadingZeros(micros);
+        counts[Math.min(bucket, BUCKETS - 1)]++;
+        count++;
+        totalNanos += Math.max(0, lateNanos);
+        maxNanos = Math.max(maxNanos, lateNanos);
+    }
+
+    /**
+     * @param bucket which bucket (0 for under 1 microsecond)
+     * @return the number of events in the bucket
+     */
+    public synchronized long getBucketCount(int bucket) {
+        return counts[bucket];
+    }
+
+    /**
+     * @param bucket which bucket
+     * @return the longest lateness counted in the bucket, in microseconds
+     * (Long.MAX_VALUE for the last)
+     */
+    public static long getBucketLimitMicros(int bucket) {
+        return (bucket == BUCKETS - 1) ? Long.MAX_VALUE : (1L << bucket);
+    }
+
+    /**
+     * @return the number of events recorded
+     */
+    public synchronized long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the average lateness, in microseconds
+     */
+    public synchronized double getMeanMicros() {
+        return (count == 0) ? 0 : totalNanos / 1e3 / count;
+    }
+
+    /**
+     * @return the greatest lateness, in microseconds
+     */
+    public synchronized double getMaxMicros() {
+        return maxNanos / 1e3;
+    }
+
+    /**
+     * Returns the lateness that the given fraction of events were within, to the
+     * nearest bucket.
+     *
+     * @param fraction between 0.0 and 1.0 (e.g. 0.99)
+     * @return the limit of the bucket, in microseconds
+     */
+    public synchronized long getPercentileMicros(double fraction) {
+        long target = (long) Math.ceil(fraction * count);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return getBucketLimitMicros(i);
+            }
+        }
+        return getBucketLimitMicros(BUCKETS - 1);
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("%d events, mean %.1f us, max %.1f us%n", count, getMeanMicros(), getMaxMicros()));
+        for (int i = 0; i < BUCKETS; i++) {
+            if (counts[i] > 0) {
+                String limit = (i == BUCKETS - 1) ? "longer" : "< " + getBucketLimitMicros(i) + " us";
+                out.append(String.format("  %-12s %d%n", limit, counts[i]));
+            }
+        }
+        return out.toString();
+    }
+}
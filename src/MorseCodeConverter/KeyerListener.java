@@ -0,0 +1,25 @@
+package MorseCodeConverter;
+
+/**
+ * Receives the key going down and up from a KeyerScheduler, e.g. to key a
+ * transmitter. Called on the scheduler's thread at the moment of each edge, so
+ * it should return quickly.
+ *
+ * @author Jacob White
+ */
+public interface KeyerListener {
+
+    /**
+     * The key went down.
+     *
+     * @param element which element of the timeline (0 for the first)
+     */
+    void keyDown(int element);
+
+    /**
+     * The key went up.
+     *
+     * @param element which element of the timeline (0 for the first)
+     */
+    void keyUp(int element);
+}
@@ -0,0 +1,141 @@
+package MorseCodeConverter;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Keys a KeyingTimeline in real time, calling a KeyerListener as the key goes
+ * down and up. Every edge has a deadline measured from the same start time by
+ * System.nanoTime, so one late edge doesn't push back the ones after it the way
+ * sleeping for each gap in turn does.
+ *
+ * To wait for a deadline the thread parks until it is close, then spins for the
+ * rest, which is much more accurate than parking alone (the scheduler can wake
+ * a thread late by a millisecond or more) while only using the CPU for a moment
+ * before each edge. How late each edge was is recorded in a JitterHistogram.
+ *
+ * @author Jacob White
+ */
+public final class KeyerScheduler {
+    //Spin for the last 200 microseconds before each deadline by default
+    public static final long DEFAULT_SPIN_NANOS = 200000;
+    //Time from starting a session to the first key down
+    private static final long LEAD_NANOS = 5000000;
+    //Thread.onSpinWait, which tells the CPU it's in a spin loop (Java 9 and up), or null before that
+    private static final MethodHandle ON_SPIN_WAIT = findOnSpinWait();
+
+    private final KeyingTimeline timeline;
+    private final KeyerListener listener;
+    private final long spinNanos;
+    private final JitterHistogram jitter = new JitterHistogram();
+    private volatile boolean cancelled = false;
+
+    /**
+     * @param timeline the transmission to key
+     * @param listener receives the key down and up events
+     */
+    public KeyerScheduler(KeyingTimeline timeline, KeyerListener listener) {
+        this(timeline, listener, DEFAULT_SPIN_NANOS);
+    }
+
+    /**
+     * @param timeline the transmission to key
+     * @param listener receives the key down and up events
+     * @param spinNanos how long before each deadline to stop parking and spin
+     */
+    public KeyerScheduler(KeyingTimeline timeline, KeyerListener listener, long spinNanos) {
+        this.timeline = timeline;
+        this.listener = listener;
+        this.spinNanos = spinNanos;
+    }
+
+    /**
+     * Keys the whole transmission on the calling thread, returning after the
+     * final gap. If cancelled or interrupted partway, the key is let up first.
+     *
+     * @return the lateness of every edge
+     * @throws InterruptedException if interrupted while keying
+     */
+    public JitterHistogram run() throws InterruptedException {
+        long start = System.nanoTime() + LEAD_NANOS;
+        for (int i = 0; i < timeline.getElementCount(); i++) {
+            waitUntil(start + timeline.getKeyDownNanos(i));
+            if (cancelled) {
+                break;
+            }
+            listener.keyDown(i);
+            jitter.record(System.nanoTime() - start - timeline.getKeyDownNanos(i));
+            //Always let the key up, even if cancelled or interrupted while it's down
+            try {
+                waitUntil(start + timeline.getKeyUpNanos(i));
+            }
+            finally {
+                listener.keyUp(i);
+                //Not if it was let up early, which isn't lateness
+                long late = System.nanoTime() - start - timeline.getKeyUpNanos(i);
+                if (late >= 0) {
+                    jitter.record(late);
+                }
+            }
+        }
+        if (!cancelled) {
+            waitUntil(start + timeline.getLengthNanos());
+        }
+        return jitter;
+    }
+
+    /**
+     * Parks until shortly before the deadline, then spins until it. Returns
+     * early if cancelled.
+     */
+    private void waitUntil(long deadline) throws InterruptedException {
+        long remaining;
+        while (!cancelled && (remaining = deadline - System.nanoTime()) > spinNanos) {
+            LockSupport.parkNanos(remaining - spinNanos);
+            if (Thread.interrupted()) {
+                cancelled = true;
+                throw new InterruptedException();
+            }
+        }
+        while (!cancelled && System.nanoTime() - deadline < 0) {
+            onSpinWait();
+        }
+    }
+
+    private static MethodHandle findOnSpinWait() {
+        try {
+            return MethodHandles.lookup().findStatic(Thread.class, "onSpinWait", MethodType.methodType(void.class));
+        }
+        catch (NoSuchMethodException | IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    private static void onSpinWait() {
+        if (ON_SPIN_WAIT != null) {
+            try {
+                ON_SPIN_WAIT.invokeExact();
+            }
+            catch (Throwable e) {
+                //onSpinWait doesn't throw
+            }
+        }
+    }
+
+    /**
+     * Stops keying as soon as possible (from any thread), letting the key up if
+     * it's down.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @return the lateness of every edge so far
+     */
+    public JitterHistogram getJitter() {
+        return jitter;
+    }
+}
@@ -0,0 +1,223 @@
+package MorseCodeConverter;
+
+import java.util.Arrays;
+
+/**
+ * A Morse code transmission compiled to the times the key goes down and up, so
+ * every kind of output (audio playback, audio files, a keyer, a display) reads
+ * the same timing from plain arrays instead of interpreting the dots and
+ * dashes itself. Times are in nanoseconds from the start of the transmission,
+ * and can be converted to samples at any sample rate.
+ *
+ * The timing follows the usual rules: a dash is 3 dots long, and the gaps
+ * between the elements of a letter, between letters and between words are 1,
+ * 3 and 7 dots. Two adjustments are also supported:
+ *
+ * Farnsworth spacing sends the letters at the full speed but stretches the
+ * gaps between letters and words, so the overall speed is the (lower)
+ * effective speed.
+ *
+ * Weighting changes how long the key is down for each element (50% is normal,
+ * more is heavier). The gap after each element shrinks by the same amount, so
+ * the overall speed doesn't change.
+ *
+ * Each transmission ends with a word gap, so transmissions can be sent back to
+ * back.
+ *
+ * @author Jacob White
+ */
+public final class KeyingTimeline {
+    public static final int NORMAL_WEIGHT = 50;
+
+    //Time of each key down, followed by the time of the key up after it
+    private final long[] edges;
+    private final long lengthNanos;
+    //Symbols of the Morse code, and the time each one starts
+    private final String symbols;
+    private final long[] symbolNanos;
+
+    private KeyingTimeline(long[] edges, long lengthNanos, String symbols, long[] symbolNanos) {
+        this.edges = edges;
+        this.lengthNanos = lengthNanos;
+        this.symbols = symbols;
+        this.symbolNanos = symbolNanos;
+    }
+
+    /**
+     * Compiles Morse code text at the given speed, without Farnsworth spacing or
+     * weighting.
+     *
+     * @param morse Morse code text (dots, dashes, spaces and word separators)
+     * @param wpm words per minute
+     * @return the timeline
+     */
+    public static KeyingTimeline compile(String morse, int wpm) {
+        return compile(morse, wpm, wpm, NORMAL_WEIGHT);
+    }
+
+    /**
+     * Compiles Morse code text.
+     *
+     * @param morse Morse code text (dots, dashes, spaces and word separators)
+     * @param wpm words per minute the letters are sent at
+     * @param effectiveWpm overall words per minute, using Farnsworth spacing if
+     * it's lower than wpm
+     * @param weight percentage of each dot and the gap after it that the key is
+     * down (50 is normal)
+     * @return the timeline
+     * @throws IllegalArgumentException if the weight isn't between 0 and 100
+     */
+    public static KeyingTimeline compile(String morse, int wpm, int effectiveWpm, int weight) {
+        if (weight <= 0 || weight >= 100) {
+            throw new IllegalArgumentException("Weight must be between 0 and 100: " + weight);
+        }
+        double dot = 1.2e9 / wpm;
+        //Added to each element, and taken off the gap after it
+        double extra = 2 * dot * weight / 100 - dot;
+        double letterGap = 3 * dot;
+        double wordGap = 7 * dot;
+        if (effectiveWpm > 0 && effectiveWpm < wpm) {
+            //Farnsworth: the 19 dots of gaps in PARIS take up whatever time is left
+            double gapTime = (60.0 * wpm - 37.2 * effectiveWpm) / (wpm * effectiveWpm) * 1e9;
+            letterGap = 3 * gapTime / 19;
+            wordGap = 7 * gapTime / 19;
+        }
+
+        long[] edges = new long[16];
+        int edgeCount = 0;
+        StringBuilder symbols = new StringBuilder(morse.length());
+        long[] symbolNanos = new long[morse.length()];
+        double time = 0;
+        //Gap before the next element: 1 dot, letterGap or wordGap (0 before the first)
+        double gap = 0;
+        for (int i = 0; i < morse.length(); i++) {
+            char symbol = morse.charAt(i);
+            switch (symbol) {
+                case '.':
+                case '-':
+                    if (edgeCount > 0) {
+                        time += gap - extra;
+                    }
+                    if (edgeCount + 2 > edges.length) {
+                        edges = Arrays.copyOf(edges, edges.length * 2);
+                    }
+                    symbolNanos[symbols.length()] = Math.round(time);
+                    edges[edgeCount++] = Math.round(time);
+                    time += ((symbol == '.') ? dot : 3 * dot) + extra;
+                    edges[edgeCount++] = Math.round(time);
+                    gap = dot;
+                    break;
+                case ' ':
+                    symbolNanos[symbols.length()] = Math.round(time);
+                    gap = Math.max(gap, letterGap);
+                    break;
+                case '|':
+                case '/':
+                    symbolNanos[symbols.length()] = Math.round(time);
+                    gap = wordGap;
+                    break;
+                default:
+                    continue;
+            }
+            symbols.append(symbol);
+        }
+        if (edgeCount > 0) {
+            time += wordGap - extra;
+        }
+        return new KeyingTimeline(Arrays.copyOf(edges, edgeCount), Math.round(time),
+                symbols.toString(), Arrays.copyOf(symbolNanos, symbols.length()));
+    }
+
+    /**
+     * Converts a time to the sample it falls on.
+     *
+     * @param nanos time from the start
+     * @param sampleRate samples per second
+     * @return index of the sample
+     */
+    public static long toFrame(long nanos, float sampleRate) {
+        return Math.round(nanos * (double) sampleRate / 1e9);
+    }
+
+    /**
+     * @return the number of times the key goes down (dots and dashes)
+     */
+    public int getElementCount() {
+        return edges.length / 2;
+    }
+
+    /**
+     * @param i which element (0 for the first)
+     * @return the time the key goes down for the element
+     */
+    public long getKeyDownNanos(int i) {
+        return edges[2 * i];
+    }
+
+    /**
+     * @param i which element (0 for the first)
+     * @return the time the key goes up after the element
+     */
+    public long getKeyUpNanos(int i) {
+        return edges[2 * i + 1];
+    }
+
+    /**
+     * Returns the first element that hasn't ended by the given time.
+     *
+     * @param nanos time from the start
+     * @return index of the element, or getElementCount() if they have all ended
+     */
+    public int elementAt(long nanos) {
+        //Search the key up times only
+        int low = 0;
+        int high = getElementCount();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (edges[2 * mid + 1] <= nanos) {
+                low = mid + 1;
+            }
+            else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return the length of the transmission, including the final word gap
+     */
+    public long getLengthNanos() {
+        return lengthNanos;
+    }
+
+    /**
+     * Returns how long the key is down and up in turn, starting with the first
+     * key down and ending with the final gap.
+     *
+     * @return the durations in nanoseconds
+     */
+    public long[] getDurations() {
+        long[] durations = new long[edges.length];
+        for (int i = 0; i < edges.length; i++) {
+            long next = (i + 1 < edges.length) ? edges[i + 1] : lengthNanos;
+            durations[i] = next - edges[i];
+        }
+        return durations;
+    }
+
+    /**
+     * Returns the symbols of the transmission and the sample each one starts at.
+     * A space or word separator starts when the element before it ends.
+     *
+     * @param sampleRate samples per second
+     * @return the schedule
+     */
+    public PlaybackSchedule getSchedule(float sampleRate) {
+        long[] startFrames = new long[symbolNanos.length];
+        for (int i = 0; i < startFrames.length; i++) {
+            startFrames[i] = toFrame(symbolNanos[i], sampleRate);
+        }
+        return new PlaybackSchedule(symbols, startFrames);
+    }
+}
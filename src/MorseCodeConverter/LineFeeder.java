@@ -0,0 +1,233 @@
+package MorseCodeConverter;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.LockSupport;
+import javax.sound.sampled.SourceDataLine;
+
+/**
+ * Plays a MorseRenderer's (or a buffer's, or any SampleSource's) samples on a
+ * line from a high priority thread of its own, keeping the line's buffer
+ * filled to a target level instead of blocking in write with it full.
+ * Rendering only just ahead of the line keeps the delay between rendering and
+ * hearing a sample short, while the target leaves room for the thread to be
+ * late without the line running dry.
+ *
+ * While playing it counts underruns (the number of times the line ran out of
+ * samples before the transmission was over) and notes when the first sample
+ * was heard. Both are checked each time the thread wakes up, which is at least
+ * a few times per buffer.
+ *
+ * @author Jacob White
+ */
+public final class LineFeeder implements Runnable {
+    //Longest the thread waits between checks on the line
+    private static final long MAX_PARK_NANOS = 5000000;
+
+    private final SourceDataLine line;
+    private final SampleSource source;
+    private final int targetFill;
+    private final byte[] block;
+    private final Thread thread;
+
+    //Frame position of the line when playing started
+    private volatile long basePosition = 0;
+    private volatile long framesWritten = 0;
+    //Frames played when playing was over, since the line may be reused after that
+    private volatile long finalFrames = -1;
+    private volatile long firstSampleNanos = -1;
+    private volatile int underruns = 0;
+    private volatile boolean done = false;
+    private volatile boolean cancelled = false;
+    private volatile RuntimeException failure = null;
+
+    /**
+     * @param line an open 8 bit mono line
+     * @param source the samples to play
+     * @param targetFill bytes kept in the line's buffer while rendering
+     */
+    public LineFeeder(SourceDataLine line, MorseRenderer source, int targetFill) {
+        this(line, (SampleSource) source, targetFill);
+    }
+
+    /**
+     * @param line an open 8 bit mono line
+     * @param samples the samples to play, from the buffer's position to its
+     * limit (which doesn't change)
+     * @param targetFill bytes kept in the line's buffer while rendering
+     */
+    public LineFeeder(SourceDataLine line, ByteBuffer samples, int targetFill) {
+        this(line, bufferSource(samples.duplicate()), targetFill);
+    }
+
+    LineFeeder(SourceDataLine line, SampleSource source, int targetFill) {
+        this.line = line;
+        this.source = source;
+        this.targetFill = Math.max(1, Math.min(targetFill, line.getBufferSize()));
+        this.block = new byte[this.targetFill];
+        this.thread = new Thread(this, "LineFeeder");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MAX_PRIORITY);
+    }
+
+    /**
+     * Starts playing on the feeder's thread.
+     */
+    public void start() {
+        basePosition = line.getLongFramePosition();
+        thread.start();
+    }
+
+    /**
+     * Returns a source that copies the samples out of a buffer.
+     */
+    private static SampleSource bufferSource(ByteBuffer samples) {
+        return (buf, offset, length) -> {
+            if (!samples.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, samples.remaining());
+            samples.get(buf, offset, count);
+            return count;
+        };
+    }
+
+    @Override
+    public void run() {
+        try {
+            line.start();
+            float framesPerNano = line.getFormat().getFrameRate() / 1e9f;
+            boolean starved = false;
+            boolean rendering = true;
+            while (rendering && !cancelled) {
+                long buffered = framesWritten - getPlayedFrames();
+                checkFirstSample();
+                //Count each time the line runs dry, not each check while it's dry
+                if (buffered <= 0 && framesWritten > 0) {
+                    if (!starved) {
+                        underruns++;
+                    }
+                    starved = true;
+                }
+                else {
+                    starved = false;
+                }
+                int fill = line.getBufferSize() - line.available();
+                if (fill < targetFill) {
+                    int count = source.render(block, 0, targetFill - fill);
+                    if (count < 0) {
+                        rendering = false;
+                    }
+                    else {
+                        line.write(block, 0, count);
+                        framesWritten += count;
+                    }
+                }
+                else {
+                    //Sleep until about half of the target has been played
+                    long nanos = (long) ((fill - targetFill / 2) / framesPerNano);
+                    LockSupport.parkNanos(Math.min(nanos, MAX_PARK_NANOS));
+                }
+            }
+            if (cancelled) {
+                line.flush();
+            }
+            else {
+                line.drain();
+            }
+            checkFirstSample();
+        }
+        catch (RuntimeException e) {
+            failure = e;
+        }
+        finally {
+            finalFrames = getPlayedFrames();
+            done = true;
+        }
+    }
+
+    private void checkFirstSample() {
+        if (firstSampleNanos < 0 && getPlayedFrames() > 0) {
+            firstSampleNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Waits until the line has played the given number of frames, or playing
+     * is over.
+     *
+     * @param frame number of frames from the start of the transmission
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void awaitFrame(long frame) throws InterruptedException {
+        while (!done && getPlayedFrames() < frame) {
+            Thread.sleep(1);
+        }
+    }
+
+    /**
+     * Waits until the line has played every sample, or playing was cancelled.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void await() throws InterruptedException {
+        thread.join();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Stops playing, throws away whatever the line hasn't played yet, and waits
+     * for the feeder's thread to stop using the line, so it can be closed or
+     * given back to a pool straight away. Interrupts while waiting are put off
+     * until the thread has stopped.
+     */
+    public void cancel() {
+        cancelled = true;
+        LockSupport.unpark(thread);
+        boolean interrupted = false;
+        while (thread.isAlive() && thread != Thread.currentThread()) {
+            try {
+                thread.join();
+            }
+            catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return the number of frames the line has played since playing started
+     */
+    public long getPlayedFrames() {
+        if (finalFrames >= 0) {
+            return finalFrames;
+        }
+        return line.getLongFramePosition() - basePosition;
+    }
+
+    /**
+     * @return the System.nanoTime when the first sample was heard, or -1 if it
+     * hasn't been yet
+     */
+    public long getFirstSampleNanos() {
+        return firstSampleNanos;
+    }
+
+    /**
+     * @return the number of times the line ran out of samples while playing
+     */
+    public int getUnderruns() {
+        return underruns;
+    }
+
+    /**
+     * @return true if playing is over
+     */
+    public boolean isDone() {
+        return done;
+    }
+}
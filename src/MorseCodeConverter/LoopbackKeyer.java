@@ -0,0 +1,71 @@
+package MorseCodeConverter;
+
+import java.util.Arrays;
+
+/**
+ * Stand-in for a transmitter that just records when the key went down and up,
+ * for testing a KeyerScheduler. The recorded edges can be compared with the
+ * timeline they were keyed from.
+ *
+ * @author Jacob White
+ */
+public final class LoopbackKeyer implements KeyerListener {
+    private long[] edges = new long[64];
+    private int count = 0;
+    private boolean down = false;
+
+    @Override
+    public synchronized void keyDown(int element) {
+        record();
+        down = true;
+    }
+
+    @Override
+    public synchronized void keyUp(int element) {
+        record();
+        down = false;
+    }
+
+    private void record() {
+        if (count == edges.length) {
+            edges = Arrays.copyOf(edges, count * 2);
+        }
+        edges[count++] = System.nanoTime();
+    }
+
+    /**
+     * @return true if the key is down
+     */
+    public synchronized boolean isDown() {
+        return down;
+    }
+
+    /**
+     * @return the System.nanoTime of each key down followed by the key up after
+     * it, in order
+     */
+    public synchronized long[] getEdges() {
+        return Arrays.copyOf(edges, count);
+    }
+
+    /**
+     * Returns how long the key was down and up in turn, from the first key down
+     * to the last key up, to compare with KeyingTimeline.getDurations.
+     *
+     * @return the durations in nanoseconds
+     */
+    public synchronized long[] getDurations() {
+        long[] durations = new long[Math.max(0, count - 1)];
+        for (int i = 0; i < durations.length; i++) {
+            durations[i] = edges[i + 1] - edges[i];
+        }
+        return durations;
+    }
+
+    /**
+     * Forgets every edge so this can be reused.
+     */
+    public synchronized void clear() {
+        count = 0;
+    }
+}
@@ -0,0 +1,254 @@
+package MorseCodeConverter;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Compact binary form of Morse code text (dots, dashes, "|" and "/"), for
+ * storing or sending large numbers of messages. Each Morse letter is written as
+ * a 3 bit length followed by one bit per element (0 for a dot, 1 for a dash),
+ * so "E" takes 4 bits instead of the 2 bytes of ". ". The gap between letters
+ * is implied.
+ *
+ * Lengths:
+ *   1-6    a letter with that many elements
+ *   0      a word separator "|"
+ *   7      escape, followed by 3 more bits:
+ *            0     a word separator "/"
+ *            1-6   a letter with 6 more elements than that (7-12)
+ *
+ * A message starts with the number of bits that follow as a 4 byte int, and is
+ * padded with 0 bits to a whole byte. Messages are read from and written to a
+ * ByteBuffer in place (starting at its position), so several can be stored
+ * back to back. Converting back to text gives the same letters and separators,
+ * with exactly one space between each.
+ *
+ * @author Jacob White
+ */
+public final class MorseBinaryFormat {
+    private static final int LENGTH_BITS = 3;
+    private static final int WORD_GAP = 0;
+    private static final int ESCAPE = 7;
+    private static final int SLASH_GAP = 0;
+    //Longest letter that fits in a single length
+    private static final int SHORT_LETTER = ESCAPE - 1;
+    private static final int HEADER_BYTES = 4;
+
+    private MorseBinaryFormat() {
+    }
+
+    /**
+     * Calculates the number of bytes the Morse code takes in binary form.
+     *
+     * @param morse Morse code text
+     * @return size in bytes, including the header
+     * @throws InvalidCharacterException if a Morse letter isn't dots and dashes (at most CodeTable.MAX_CODE_LENGTH) or a word separator
+     */
+    public static int encodedSize(CharSequence morse) throws InvalidCharacterException {
+        long bits = 0;
+        int i = 0;
+        while ((i = nextLetter(morse, i)) < morse.length()) {
+            int letterEnd = letterEnd(morse, i);
+            bits += letterBits(morse, i, letterEnd);
+            i = letterEnd;
+        }
+        return HEADER_BYTES + (int) ((bits + 7) / 8);
+    }
+
+    /**
+     * Converts Morse code text to a new buffer in binary form.
+     *
+     * @param morse Morse code text
+     * @return buffer containing the message, ready to be read
+     * @throws InvalidCharacterException if a Morse letter isn't dots and dashes or a word separator
+     */
+    public static ByteBuffer encode(CharSequence morse) throws InvalidCharacterException {
+        ByteBuffer buffer = ByteBuffer.allocate(encodedSize(morse));
+        write(morse, buffer);
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Writes Morse code text in binary form into the buffer at its position,
+     * then moves the position past the message.
+     *
+     * @param morse Morse code text
+     * @param out buffer to write to
+     * @throws InvalidCharacterException if a Morse letter isn't dots and dashes or a word separator
+     * @throws BufferOverflowException if the buffer doesn't have encodedSize(morse) bytes remaining
+     */
+    public static void write(CharSequence morse, ByteBuffer out) throws InvalidCharacterException {
+        int headerIndex = out.position();
+        out.putInt(0);
+        //Bits not yet written, right-aligned
+        long pending = 0;
+        int pendingBits = 0;
+        long totalBits = 0;
+        int i = 0;
+        while ((i = nextLetter(morse, i)) < morse.length()) {
+            int letterEnd = letterEnd(morse, i);
+            int letterBits = letterBits(morse, i, letterEnd);
+            int length = letterEnd - i;
+            char first = morse.charAt(i);
+            long code;
+            if (first == '|') {
+                code = WORD_GAP;
+            }
+            else if (first == '/') {
+                code = (ESCAPE << LENGTH_BITS) | SLASH_GAP;
+            }
+            else {
+                int elements = letterKey(morse, i, letterEnd) & ((1 << length) - 1);
+                long prefix = (length <= SHORT_LETTER) ? length : (ESCAPE << LENGTH_BITS) | (length - SHORT_LETTER);
+                code = (prefix << length) | elements;
+            }
+            pending = (pending << letterBits) | code;
+            pendingBits += letterBits;
+            totalBits += letterBits;
+            while (pendingBits >= 8) {
+                pendingBits -= 8;
+                out.put((byte) (pending >>> pendingBits));
+            }
+            i = letterEnd;
+        }
+        if (pendingBits > 0) {
+            out.put((byte) (pending << (8 - pendingBits)));
+        }
+        out.putInt(headerIndex, (int) totalBits);
+    }
+
+    /**
+     * Reads a message in binary form from the buffer at its position, and
+     * returns it as Morse code text.
+     *
+     * @param in buffer to read from
+     * @return Morse code text, one space between each letter or separator
+     * @throws BufferUnderflowException if the buffer ends before the message does
+     */
+    public static String decode(ByteBuffer in) {
+        StringBuilder out = new StringBuilder();
+        read(in, out);
+        return out.toString();
+    }
+
+    /**
+     * Reads a message in binary form from the buffer at its position, appends
+     * it to out as Morse code text, then moves the position past the message.
+     * The bytes are read straight from the buffer without copying them.
+     *
+     * @param in buffer to read from
+     * @param out where the Morse code text is appended
+     * @throws BufferUnderflowException if the buffer ends before the message does
+     */
+    public static void read(ByteBuffer in, StringBuilder out) {
+        int totalBits = in.getInt();
+        int start = in.position();
+        int byteLength = (int) ((totalBits + 7L) / 8);
+        if (totalBits < 0 || byteLength > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        out.ensureCapacity(out.length() + totalBits);
+        int bit = 0;
+        boolean first = true;
+        while (bit < totalBits) {
+            int length = readBits(in, start, bit, LENGTH_BITS);
+            bit += LENGTH_BITS;
+            if (!first) {
+                out.append(' ');
+            }
+            first = false;
+            if (length == WORD_GAP) {
+                out.append('|');
+                continue;
+            }
+            if (length == ESCAPE) {
+                int extra = readBits(in, start, bit, LENGTH_BITS);
+                bit += LENGTH_BITS;
+                if (extra == SLASH_GAP) {
+                    out.append('/');
+                    continue;
+                }
+                length = SHORT_LETTER + extra;
+            }
+            if (bit + length > totalBits) {
+                throw new BufferUnderflowException();
+            }
+            for (int j = 0; j < length; j++) {
+                out.append(readBits(in, start, bit + j, 1) == 0 ? '.' : '-');
+            }
+            bit += length;
+        }
+        in.position(start + byteLength);
+    }
+
+    /**
+     * Reads up to 8 bits starting at the given bit of the message.
+     */
+    private static int readBits(ByteBuffer in, int start, int bit, int count) {
+        int index = start + (bit >>> 3);
+        int window = (in.get(index) & 0xFF) << 8;
+        if (index + 1 < in.limit()) {
+            window |= in.get(index + 1) & 0xFF;
+        }
+        return (window >>> (16 - (bit & 7) - count)) & ((1 << count) - 1);
+    }
+
+    /**
+     * Returns the index of the next character that isn't whitespace.
+     */
+    private static int nextLetter(CharSequence morse, int i) {
+        while (i < morse.length() && Character.isWhitespace(morse.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Returns the index after the Morse letter that starts at i.
+     */
+    private static int letterEnd(CharSequence morse, int i) {
+        while (i < morse.length() && !Character.isWhitespace(morse.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Returns the bit-packed key (see CodeTable.morseKey) of the Morse letter
+     * between the indices, or -1 if it isn't dots and dashes.
+     */
+    private static int letterKey(CharSequence morse, int from, int to) {
+        if (to - from > CodeTable.MAX_CODE_LENGTH) {
+            return -1;
+        }
+        int key = 1;
+        for (int i = from; i < to; i++) {
+            char c = morse.charAt(i);
+            if (c != '.' && c != '-') {
+                return -1;
+            }
+            key = (key << 1) | (c == '-' ? 1 : 0);
+        }
+        return key;
+    }
+
+    /**
+     * Returns the number of bits the Morse letter between the indices takes.
+     */
+    private static int letterBits(CharSequence morse, int from, int to) throws InvalidCharacterException {
+        int length = to - from;
+        char first = morse.charAt(from);
+        if (length == 1 && first == '|') {
+            return LENGTH_BITS;
+        }
+        if (length == 1 && first == '/') {
+            return 2 * LENGTH_BITS;
+        }
+        if (letterKey(morse, from, to) < 0) {
+            throw new InvalidCharacterException(morse.subSequence(from, to).toString());
+        }
+        return (length <= SHORT_LETTER) ? LENGTH_BITS + length : 2 * LENGTH_BITS + length;
+    }
+}
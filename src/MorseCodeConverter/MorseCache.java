@@ -0,0 +1,98 @@
+package MorseCodeConverter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of conversions (e.g. text to its Morse code) for messages and
+ * words that are sent over and over, like callsigns, Q codes and sign-offs.
+ * When the cache is full, the entry that was used least recently is thrown out.
+ * Safe to use from several threads at once.
+ *
+ * @author Jacob White
+ */
+public final class MorseCache {
+    private final int maxEntries;
+    private final LinkedHashMap<String, String> entries;
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * @param maxEntries most conversions kept at once
+     */
+    public MorseCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        //Access order, so the eldest entry is the least recently used
+        this.entries = new LinkedHashMap<String, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > MorseCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Looks up a conversion, counting it as a hit or a miss.
+     *
+     * @param key the input
+     * @return the converted input, or null if it isn't cached
+     */
+    public synchronized String get(String key) {
+        String value = entries.get(key);
+        if (value == null) {
+            misses++;
+        }
+        else {
+            hits++;
+        }
+        return value;
+    }
+
+    /**
+     * Stores a conversion, throwing out the least recently used one if the
+     * cache is full.
+     *
+     * @param key the input
+     * @param value the converted input
+     */
+    public synchronized void put(String key, String value) {
+        entries.put(key, value);
+    }
+
+    /**
+     * @return the number of lookups that found a conversion
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of lookups that didn't find a conversion
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the number of conversions currently cached
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the most conversions kept at once
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Throws out every conversion and resets the hit and miss counts.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        hits = 0;
+        misses = 0;
+    }
+}
@@ -0,0 +1,48 @@
+package MorseCodeConverter;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Converts one chunk of a large message (text to Morse code or vice versa) on
+ * a ForkJoinPool for TextToMorse. The chunk's output is kept separately so the
+ * chunks can be stitched back together in order once they are all done.
+ *
+ * @author Jacob White
+ */
+class MorseChunkTask extends RecursiveAction {
+
+    private final TextToMorse ttm;
+    private final CharSequence input;
+    private final int from;
+    private final int to;
+    private final boolean decoding;
+    final StringBuilder output;
+    final ConversionErrors errors;
+    int invalidIndex = -1;
+
+    public MorseChunkTask(TextToMorse ttm, CharSequence input, int from, int to, boolean decoding, ConversionErrors errors) {
+        this.ttm = ttm;
+        this.input = input;
+        this.from = from;
+        this.to = to;
+        this.decoding = decoding;
+        this.errors = errors;
+        //Every Morse letter is at least 2 characters, and every text character at most 8
+        this.output = new StringBuilder(decoding ? (to - from) / 2 + 1 : (to - from) * 4);
+    }
+
+    /**
+     * Converts the chunk, keeping the index of the first invalid character (or
+     * every invalid character, if errors isn't null) so that it can be reported
+     * in order by TextToMorse.
+     */
+    @Override
+    protected void compute() {
+        if (decoding) {
+            invalidIndex = ttm.decode(input, from, to, output, errors);
+        }
+        else {
+            invalidIndex = ttm.encode(input, from, to, output, errors);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package MorseCodeConverter;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Mixes one slice of time of a MorseMixer on a ForkJoinPool. Every signal is
+ * rendered from the start of the slice into a block of doubles, and the sum is
+ * written as 16 bit samples straight to the slice's place in the shared buffer.
+ *
+ * @author Jacob White
+ */
+class MorseMixTask extends RecursiveAction {
+    private static final int BLOCK_SIZE = 4096;
+    //Level above which soft clipping starts to bend the signal
+    private static final double SOFT_KNEE = 0.5;
+
+    private final List<MorseSignal> signals;
+    private final KeyingTimeline[] timelines;
+    private final long[] startFrames;
+    private final float sampleRate;
+    private final long from;
+    private final long to;
+    private final double gain;
+    private final boolean softClipping;
+    private final ByteBuffer out;
+    long clippedSamples = 0;
+
+    /**
+     * @param timelines the compiled Morse code of each signal
+     * @param startFrames first sample of each signal in the mix
+     * @param from first sample of the slice
+     * @param to sample after the slice
+     * @param out buffer for the whole mix, positioned at its first sample
+     */
+    public MorseMixTask(List<MorseSignal> signals, KeyingTimeline[] timelines, long[] startFrames, float sampleRate, long from, long to, double gain, boolean softClipping, ByteBuffer out) {
+        this.signals = signals;
+        this.timelines = timelines;
+        this.startFrames = startFrames;
+        this.sampleRate = sampleRate;
+        this.from = from;
+        this.to = to;
+        this.gain = gain;
+        this.softClipping = softClipping;
+        this.out = out;
+    }
+
+    @Override
+    protected void compute() {
+        //A renderer for each signal that overlaps the slice
+        MorseRenderer[] renderers = new MorseRenderer[signals.size()];
+        for (int i = 0; i < renderers.length; i++) {
+            MorseSignal signal = signals.get(i);
+            MorseRenderer renderer = new MorseRenderer(timelines[i], signal.getFrequency(), signal.getVolume(), sampleRate);
+            if (startFrames[i] < to && startFrames[i] + renderer.getFrameLength() > from) {
+                renderer.seek(Math.max(0, from - startFrames[i]));
+                renderers[i] = renderer;
+            }
+        }
+        ByteBuffer view = out.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        view.position(out.position() + (int) (2 * from));
+        double[] block = new double[BLOCK_SIZE];
+        for (long blockStart = from; blockStart < to; blockStart += BLOCK_SIZE) {
+            int length = (int) Math.min(BLOCK_SIZE, to - blockStart);
+            Arrays.fill(block, 0, length, 0.0);
+            for (int i = 0; i < renderers.length; i++) {
+                if (renderers[i] == null || startFrames[i] >= blockStart + length) {
+                    continue;
+                }
+                //A signal that starts partway through the block is offset into it
+                int offset = (int) Math.max(0, startFrames[i] - blockStart);
+                if (renderers[i].mix(block, offset, length - offset, gain) < 0) {
+                    renderers[i] = null;
+                }
+            }
+            for (int j = 0; j < length; j++) {
+                double sample = block[j];
+                if (sample > 1.0 || sample < -1.0) {
+                    clippedSamples++;
+                }
+                if (softClipping && Math.abs(sample) > SOFT_KNEE) {
+                    //Bend smoothly towards full scale above the knee
+                    double over = (Math.abs(sample) - SOFT_KNEE) / (1.0 - SOFT_KNEE);
+                    sample = Math.signum(sample) * (SOFT_KNEE + (1.0 - SOFT_KNEE) * Math.tanh(over));
+                }
+                else {
+                    sample = Math.max(-1.0, Math.min(1.0, sample));
+                }
+                view.putShort((short) Math.round(sample * 32767.0));
+            }
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package MorseCodeConverter;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+
+/**
+ * Mixes many CW signals (e.g. a pileup for testing decoders) into one stream of
+ * 16 bit mono samples. The sum of the signals is scaled by the gain, then
+ * anything beyond full scale is clipped, either hard or softly (bending smoothly
+ * towards full scale above half of it). The headroom tells how far the loudest
+ * possible sum is below full scale.
+ *
+ * The mix is split into slices of time that are rendered in parallel on the
+ * common ForkJoinPool, so the work grows with the number of signals and is
+ * shared among the cores.
+ *
+ * @author Jacob White
+ */
+public final class MorseMixer {
+    //Fewest samples worth mixing in a slice of their own
+    private static final int MIN_SLICE_SAMPLES = 1 << 15;
+
+    private final float sampleRate;
+    private final List<MorseSignal> signals = new ArrayList<>();
+    private double gain = 1.0;
+    private boolean softClipping = false;
+    private long clippedSamples = 0;
+
+    /**
+     * @param sampleRate samples per second of the mix
+     */
+    public MorseMixer(float sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * Adds a signal to the mix.
+     *
+     * @param signal the signal
+     */
+    public void add(MorseSignal signal) {
+        signals.add(signal);
+    }
+
+    /**
+     * @return the signals in the mix
+     */
+    public List<MorseSignal> getSignals() {
+        return Collections.unmodifiableList(signals);
+    }
+
+    /**
+     * Sets the scale applied to the sum of the signals (1.0 by default).
+     *
+     * @param gain the scale
+     */
+    public void setGain(double gain) {
+        this.gain = gain;
+    }
+
+    /**
+     * Sets whether samples beyond full scale are clipped softly, which
+     * distorts less but also bends loud samples that would fit (off by default).
+     *
+     * @param soft true to clip softly, false to clip hard
+     */
+    public void setSoftClipping(boolean soft) {
+        softClipping = soft;
+    }
+
+    /**
+     * Returns how far the loudest possible sum of the signals (all keyed down
+     * and in phase) is below full scale. If it's negative, the mix can clip.
+     * With no signals (or only silent ones) the peak is taken as full scale, so
+     * the headroom is just the gain.
+     *
+     * @return the headroom in dB
+     */
+    public double getHeadroom() {
+        return -20 * Math.log10(peak() * gain);
+    }
+
+    /**
+     * Sets the gain so that the loudest possible sum of the signals is the given
+     * amount below full scale, so it can never clip. With no signals (or only
+     * silent ones) the peak is taken as full scale, so the gain is just the
+     * headroom; signals added afterwards can then clip.
+     *
+     * @param headroom the headroom in dB
+     */
+    public void setHeadroom(double headroom) {
+        gain = Math.pow(10, -headroom / 20) / peak();
+    }
+
+    /**
+     * Returns the loudest possible sum of the signals before the gain, or full
+     * scale if they are all silent.
+     */
+    private double peak() {
+        double peak = 0;
+        for (MorseSignal signal: signals) {
+            peak += signal.getVolume();
+        }
+        return (peak > 0) ? peak : 1.0;
+    }
+
+    /**
+     * @return the number of samples beyond full scale in the last mix
+     */
+    public long getClippedSamples() {
+        return clippedSamples;
+    }
+
+    /**
+     * @return the format of the mix (16 bit mono signed little-endian)
+     */
+    public AudioFormat getFormat() {
+        return new AudioFormat(sampleRate, 16, 1, true, false);
+    }
+
+    /**
+     * @return the number of samples until the last signal ends
+     */
+    public long getFrameLength() {
+        return frameLength(compileSignals(), startFrames());
+    }
+
+    private long frameLength(KeyingTimeline[] timelines, long[] startFrames) {
+        long length = 0;
+        for (int i = 0; i < timelines.length; i++) {
+            length = Math.max(length, startFrames[i] + KeyingTimeline.toFrame(timelines[i].getLengthNanos(), sampleRate));
+        }
+        return length;
+    }
+
+    /**
+     * Compiles the Morse code of each signal.
+     */
+    private KeyingTimeline[] compileSignals() {
+        KeyingTimeline[] timelines = new KeyingTimeline[signals.size()];
+        for (int i = 0; i < timelines.length; i++) {
+            timelines[i] = KeyingTimeline.compile(signals.get(i).getMorse(), signals.get(i).getWPM());
+        }
+        return timelines;
+    }
+
+    /**
+     * Returns the first sample of each signal in the mix.
+     */
+    private long[] startFrames() {
+        long[] startFrames = new long[signals.size()];
+        for (int i = 0; i < startFrames.length; i++) {
+            startFrames[i] = Math.round(signals.get(i).getStartMillis() * (double) sampleRate / 1000);
+        }
+        return startFrames;
+    }
+
+    /**
+     * Mixes the signals into a new buffer.
+     *
+     * @param direct true to allocate the buffer outside the Java heap
+     * @return buffer of 16 bit little-endian samples, ready to be read
+     */
+    public ByteBuffer mix(boolean direct) {
+        //Each signal is compiled once and shared by every slice
+        KeyingTimeline[] timelines = compileSignals();
+        long[] startFrames = startFrames();
+        long frameLength = frameLength(timelines, startFrames);
+        if (2 * frameLength > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Mix too long for a buffer: " + frameLength + " samples");
+        }
+        ByteBuffer out = direct ? ByteBuffer.allocateDirect((int) (2 * frameLength)) : ByteBuffer.allocate((int) (2 * frameLength));
+        List<MorseSignal> mixed = new ArrayList<>(signals);
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        long sliceLength = Math.max(frameLength / (4 * pool.getParallelism()), MIN_SLICE_SAMPLES);
+        List<MorseMixTask> slices = new ArrayList<>();
+        for (long from = 0; from < frameLength; from += sliceLength) {
+            MorseMixTask slice = new MorseMixTask(mixed, timelines, startFrames, sampleRate, from, Math.min(from + sliceLength, frameLength), gain, softClipping, out);
+            pool.execute(slice);
+            slices.add(slice);
+        }
+        clippedSamples = 0;
+        for (MorseMixTask slice: slices) {
+            slice.join();
+            clippedSamples += slice.clippedSamples;
+        }
+        return out;
+    }
+
+    /**
+     * Mixes the signals into memory, as an audio stream that can be played or
+     * written to a file.
+     *
+     * @return the audio stream
+     */
+    public AudioInputStream getAudioInputStream() {
+        ByteBuffer mix = mix(false);
+        return new AudioInputStream(new ByteArrayInputStream(mix.array()), getFormat(), mix.capacity() / 2);
+    }
+}
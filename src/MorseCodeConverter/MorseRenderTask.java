@@ -0,0 +1,39 @@
+package MorseCodeConverter;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Renders one chunk of a transmission on a ForkJoinPool for MorseRenderer. The
+ * samples go straight to their place in the shared buffer, a block at a time,
+ * so the chunks need no stitching together once they are all done.
+ *
+ * @author Jacob White
+ */
+class MorseRenderTask extends RecursiveAction {
+    private static final int BLOCK_SIZE = 8192;
+
+    private final MorseRenderer renderer;
+    private final ByteBuffer out;
+
+    /**
+     * @param renderer renderer for the chunk
+     * @param out buffer for the whole transmission, positioned at its first sample
+     */
+    public MorseRenderTask(MorseRenderer renderer, ByteBuffer out) {
+        this.renderer = renderer;
+        this.out = out;
+    }
+
+    @Override
+    protected void compute() {
+        //Each chunk writes through its own view of the buffer, at its own position
+        ByteBuffer view = out.duplicate();
+        view.position(out.position() + (int) renderer.getPosition());
+        byte[] block = new byte[BLOCK_SIZE];
+        int count;
+        while ((count = renderer.render(block, 0, block.length)) > 0) {
+            view.put(block, 0, count);
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package MorseCodeConverter;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Renders a KeyingTimeline to 8 bit mono signed samples, without a sound card
+ * and without waiting: a tone while the key is down and silence while it's up,
+ * with each key down and key up rounded to the nearest sample from the start.
+ * The samples are produced in order, a block at a time, like reading a stream.
+ *
+ * A whole transmission can also be rendered into a buffer on a ForkJoinPool,
+ * split into chunks of whole elements. Each chunk knows its first sample from the
+ * timing, and starts the oscillator at the phase it would have there, so the
+ * result is exactly the same as rendering in order.
+ *
+ * @author Jacob White
+ */
+public final class MorseRenderer implements SampleSource {
+    //Fewest samples worth rendering in a chunk of their own
+    private static final int MIN_CHUNK_SAMPLES = 1 << 16;
+
+    private final KeyingTimeline timeline;
+    private final double hz;
+    private final float sampleRate;
+    private final double volume;
+    private final ToneOscillator osc;
+    //Sample after the last one to render
+    private final long frameLength;
+
+    //Next element that hasn't ended, and the samples it starts and ends at
+    private int element = -1;
+    private long toneStart = 0;
+    private long toneEnd = 0;
+    private long position = 0;
+
+    /**
+     * @param morse Morse code text
+     * @param wpm words per minute
+     * @param hz frequency of the tones
+     * @param vol volume between 0.0 and 1.0
+     * @param sampleRate samples per second
+     */
+    public MorseRenderer(String morse, int wpm, double hz, double vol, float sampleRate) {
+        this(KeyingTimeline.compile(morse, wpm), hz, vol, sampleRate);
+    }
+
+    /**
+     * @param timeline the compiled transmission
+     * @param hz frequency of the tones
+     * @param vol volume between 0.0 and 1.0
+     * @param sampleRate samples per second
+     */
+    public MorseRenderer(KeyingTimeline timeline, double hz, double vol, float sampleRate) {
+        this(timeline, hz, vol, sampleRate, 0, KeyingTimeline.toFrame(timeline.getLengthNanos(), sampleRate));
+    }
+
+    /**
+     * Creates a renderer for the samples of a timeline between the frames.
+     */
+    private MorseRenderer(KeyingTimeline timeline, double hz, double vol, float sampleRate, long from, long to) {
+        this.timeline = timeline;
+        this.hz = hz;
+        this.sampleRate = sampleRate;
+        this.volume = vol;
+        this.osc = new ToneOscillator(hz, sampleRate);
+        this.frameLength = to;
+        seek(from);
+    }
+
+    /**
+     * Returns the symbols of the transmission that take any time, and the
+     * sample each one starts at.
+     *
+     * @return the schedule
+     */
+    public PlaybackSchedule getSchedule() {
+        return timeline.getSchedule(sampleRate);
+    }
+
+    /**
+     * @return the total number of samples in the transmission
+     */
+    public long getFrameLength() {
+        return frameLength;
+    }
+
+    /**
+     * @return the number of samples rendered so far
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    /**
+     * Renders the whole transmission into a buffer (which can be direct) at its
+     * position, in chunks of whole elements on the common ForkJoinPool, then
+     * moves the position past it. This doesn't change what render returns next.
+     *
+     * @param out buffer to write to
+     * @throws BufferOverflowException if the buffer doesn't have getFrameLength() bytes remaining
+     */
+    public void renderParallel(ByteBuffer out) {
+        if (out.remaining() < frameLength) {
+            throw new BufferOverflowException();
+        }
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        long chunkLength = Math.max(frameLength / (4 * pool.getParallelism()), MIN_CHUNK_SAMPLES);
+        List<MorseRenderTask> chunks = new ArrayList<>();
+        long chunkStart = 0;
+        while (chunkStart < frameLength) {
+            //Split where the first element after the chunk length starts
+            long target = chunkStart + chunkLength;
+            long chunkEnd = frameLength;
+            for (int next = timeline.elementAt(timelineNanos(target)); next < timeline.getElementCount(); next++) {
+                long keyDown = KeyingTimeline.toFrame(timeline.getKeyDownNanos(next), sampleRate);
+                if (keyDown >= target) {
+                    chunkEnd = Math.min(keyDown, frameLength);
+                    break;
+                }
+            }
+            MorseRenderer chunk = new MorseRenderer(timeline, hz, volume, sampleRate, chunkStart, chunkEnd);
+            MorseRenderTask task = new MorseRenderTask(chunk, out);
+            pool.execute(task);
+            chunks.add(task);
+            chunkStart = chunkEnd;
+        }
+        for (MorseRenderTask chunk: chunks) {
+            chunk.join();
+        }
+        out.position(out.position() + (int) frameLength);
+    }
+
+    /**
+     * Returns the time of a sample.
+     */
+    private long timelineNanos(long frame) {
+        return (long) (frame * 1e9 / sampleRate);
+    }
+
+    /**
+     * Renders the next samples of the transmission.
+     *
+     * @param buf where the samples are written
+     * @param offset index of the first sample
+     * @param length most samples to render
+     * @return the number of samples rendered, or -1 if the transmission is over
+     */
+    public int render(byte[] buf, int offset, int length) {
+        int rendered = 0;
+        while (rendered < length && position < frameLength) {
+            if (position == toneEnd) {
+                nextElement();
+            }
+            int count;
+            if (position >= toneStart) {
+                count = (int) Math.min(length - rendered, toneEnd - position);
+                osc.render(buf, offset + rendered, count, volume);
+            }
+            else {
+                count = (int) Math.min(length - rendered, toneStart - position);
+                Arrays.fill(buf, offset + rendered, offset + rendered + count, (byte) 0);
+                //Keep the oscillator running through the gap
+                osc.skip(count);
+            }
+            rendered += count;
+            position += count;
+        }
+        return (rendered == 0 && length > 0) ? -1 : rendered;
+    }
+
+    /**
+     * Adds the next samples of the transmission to a mix, as values between
+     * -volume and volume times the gain.
+     *
+     * @param buf the mix
+     * @param offset index of the first sample
+     * @param length most samples to add
+     * @param gain scale applied to every sample
+     * @return the number of samples added, or -1 if the transmission is over
+     */
+    public int mix(double[] buf, int offset, int length, double gain) {
+        double amplitude = volume * gain;
+        int rendered = 0;
+        while (rendered < length && position < frameLength) {
+            if (position == toneEnd) {
+                nextElement();
+            }
+            int count;
+            if (position >= toneStart) {
+                count = (int) Math.min(length - rendered, toneEnd - position);
+                for (int i = offset + rendered; i < offset + rendered + count; i++) {
+                    buf[i] += osc.next() * amplitude;
+                }
+            }
+            else {
+                count = (int) Math.min(length - rendered, toneStart - position);
+                osc.skip(count);
+            }
+            rendered += count;
+            position += count;
+        }
+        return (rendered == 0 && length > 0) ? -1 : rendered;
+    }
+
+    /**
+     * Moves to a sample of the transmission, so that render and mix carry on
+     * from there with the oscillator at the phase it would have had.
+     *
+     * @param frame index of the sample
+     */
+    public void seek(long frame) {
+        position = Math.max(0, Math.min(frame, frameLength));
+        //Back up to the element before the one that hasn't ended, then step forward
+        element = timeline.elementAt(timelineNanos(position)) - 2;
+        toneEnd = -1;
+        do {
+            nextElement();
+        } while (toneEnd <= position && toneStart < frameLength);
+        osc.seek(position);
+    }
+
+    /**
+     * Moves on to the next element. Once there are none left, the tone starts
+     * and ends after the last sample.
+     */
+    private void nextElement() {
+        element++;
+        if (element >= 0 && element < timeline.getElementCount()) {
+            toneStart = Math.min(frameLength, KeyingTimeline.toFrame(timeline.getKeyDownNanos(element), sampleRate));
+            toneEnd = Math.min(frameLength, KeyingTimeline.toFrame(timeline.getKeyUpNanos(element), sampleRate));
+        }
+        else if (element >= 0) {
+            toneStart = frameLength;
+            toneEnd = frameLength;
+        }
+        else {
+            toneStart = 0;
+            toneEnd = 0;
+        }
+    }
+}
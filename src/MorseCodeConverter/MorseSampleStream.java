@@ -0,0 +1,33 @@
+package MorseCodeConverter;
+
+import java.io.InputStream;
+
+/**
+ * Input stream of the samples of a MorseRenderer, rendered only as they are
+ * read, so a transmission of any length takes the same small amount of memory.
+ *
+ * @author Jacob White
+ */
+final class MorseSampleStream extends InputStream {
+    private final MorseRenderer renderer;
+
+    MorseSampleStream(MorseRenderer renderer) {
+        this.renderer = renderer;
+    }
+
+    @Override
+    public int read() {
+        byte[] sample = new byte[1];
+        return (renderer.render(sample, 0, 1) < 0) ? -1 : sample[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        return renderer.render(b, off, len);
+    }
+
+    @Override
+    public int available() {
+        return (int) Math.min(Integer.MAX_VALUE, renderer.getFrameLength() - renderer.getPosition());
+    }
+}
@@ -0,0 +1,65 @@
+package MorseCodeConverter;
+
+/**
+ * One CW signal in a MorseMixer: a Morse code message sent at its own speed,
+ * frequency and volume, starting some time into the mix.
+ *
+ * @author Jacob White
+ */
+public final class MorseSignal {
+    private final String morse;
+    private final int wpm;
+    private final double frequency;
+    private final double volume;
+    private final int startMillis;
+
+    /**
+     * @param morse Morse code text
+     * @param wpm words per minute
+     * @param frequency frequency of the tones (Hz)
+     * @param volume peak amplitude, where 1.0 is full scale
+     * @param startMillis time from the start of the mix to the first tone
+     */
+    public MorseSignal(String morse, int wpm, double frequency, double volume, int startMillis) {
+        this.morse = morse;
+        this.wpm = wpm;
+        this.frequency = frequency;
+        this.volume = volume;
+        this.startMillis = startMillis;
+    }
+
+    /**
+     * @return the Morse code text
+     */
+    public String getMorse() {
+        return morse;
+    }
+
+    /**
+     * @return the words per minute
+     */
+    public int getWPM() {
+        return wpm;
+    }
+
+    /**
+     * @return the frequency of the tones (Hz)
+     */
+    public double getFrequency() {
+        return frequency;
+    }
+
+    /**
+     * @return the peak amplitude, where 1.0 is full scale
+     */
+    public double getVolume() {
+        return volume;
+    }
+
+    /**
+     * @return the time from the start of the mix to the first tone
+     */
+    public int getStartMillis() {
+        return startMillis;
+    }
+}
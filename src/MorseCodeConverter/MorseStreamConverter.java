@@ -0,0 +1,207 @@
+package MorseCodeConverter;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
+/**
+ * Converts text to Morse code (or vice versa) from a Reader to a Writer, using
+ * fixed-size buffers so that inputs of any size can be converted without
+ * holding the whole message in memory.
+ *
+ * Text is upper-cased one character at a time and carriage returns are dropped,
+ * so both "\n" and "\r\n" line breaks are sent as the new line letter (.-.-).
+ * When decoding, every transmission between a starting and ending signal is
+ * converted, each followed by a line break. Anything outside of a transmission
+ * is ignored.
+ *
+ * @author Jacob White
+ */
+public class MorseStreamConverter {
+    private static final int BUFFER_SIZE = 8192;
+
+    private final TextToMorse ttm;
+
+    /**
+     * Creates a converter for International Morse code.
+     */
+    public MorseStreamConverter() {
+        this(new TextToMorse());
+    }
+
+    /**
+     * Creates a converter that uses the code table of ttm.
+     *
+     * @param ttm converter for single letters
+     */
+    public MorseStreamConverter(TextToMorse ttm) {
+        this.ttm = ttm;
+    }
+
+    /**
+     * Reads text from in and writes the Morse code transmission (with starting
+     * and ending signals) to out. Does not close either stream.
+     *
+     * @param in text
+     * @param out Morse code
+     * @throws IOException if reading or writing fails
+     * @throws InvalidCharacterException if a character has no Morse code
+     */
+    public void textToMorse(Reader in, Writer out) throws IOException, InvalidCharacterException {
+        char[] inBuf = new char[BUFFER_SIZE];
+        char[] outBuf = new char[BUFFER_SIZE];
+        int outLength = append(out, outBuf, 0, TextToMorse.start);
+        //High surrogate at the end of the last buffer, waiting for its low surrogate
+        char highSurrogate = 0;
+        int numRead;
+        while ((numRead = in.read(inBuf)) != -1) {
+            for (int i = 0; i < numRead; i++) {
+                char c = inBuf[i];
+                int codePoint = c;
+                if (highSurrogate != 0) {
+                    codePoint = Character.isLowSurrogate(c) ? Character.toCodePoint(highSurrogate, c) : highSurrogate;
+                    highSurrogate = 0;
+                    if (!Character.isLowSurrogate(c)) {
+                        i--; //Encode c on its own next time
+                    }
+                }
+                else if (Character.isHighSurrogate(c)) {
+                    highSurrogate = c;
+                    continue;
+                }
+                else if (c == '\r') {
+                    continue;
+                }
+                outLength = append(out, outBuf, outLength, " ");
+                outLength = append(out, outBuf, outLength, ttm.codePointToMorse(Character.toUpperCase(codePoint)));
+            }
+        }
+        if (highSurrogate != 0) {
+            outLength = append(out, outBuf, outLength, " ");
+            outLength = append(out, outBuf, outLength, ttm.codePointToMorse(highSurrogate));
+        }
+        outLength = append(out, outBuf, outLength, " ");
+        outLength = append(out, outBuf, outLength, TextToMorse.end);
+        out.write(outBuf, 0, outLength);
+        out.flush();
+    }
+
+    /**
+     * Reads Morse code from in and writes the text of each transmission found
+     * to out, one line per transmission. Does not close either stream.
+     *
+     * @param in Morse code
+     * @param out text
+     * @throws IOException if reading or writing fails
+     * @throws InvalidCharacterException if a Morse letter within a transmission has no text
+     * @throws InvalidTransmissionException if no transmission is found, or the last one has no ending signal
+     */
+    public void morseToText(Reader in, Writer out) throws IOException, InvalidCharacterException, InvalidTransmissionException {
+        char[] inBuf = new char[BUFFER_SIZE];
+        char[] outBuf = new char[BUFFER_SIZE];
+        int outLength = 0;
+        //The first few characters of the current letter, only kept for error messages
+        char[] letterChars = new char[CodeTable.MAX_CODE_LENGTH + 1];
+        CodeTable table = ttm.getCodeTable();
+        int key = 1;
+        int length = 0;
+        boolean valid = true;
+        boolean inTransmission = false;
+        boolean foundTransmission = false;
+
+        int numRead = 0;
+        while (numRead != -1) {
+            numRead = in.read(inBuf);
+            //Treat the end of input as whitespace so the last letter is finished
+            int last = (numRead == -1) ? 1 : numRead;
+            for (int i = 0; i < last; i++) {
+                char c = (numRead == -1) ? ' ' : inBuf[i];
+                if (!Character.isWhitespace(c)) {
+                    if (length < letterChars.length) {
+                        letterChars[length] = c;
+                    }
+                    length++;
+                    if (c == '.' && length <= CodeTable.MAX_CODE_LENGTH) {
+                        key = key << 1;
+                    }
+                    else if (c == '-' && length <= CodeTable.MAX_CODE_LENGTH) {
+                        key = (key << 1) | 1;
+                    }
+                    else {
+                        valid = false;
+                    }
+                    continue;
+                }
+                if (length == 0) {
+                    continue;
+                }
+
+                //A whole letter has been read
+                if (!inTransmission) {
+                    inTransmission = valid && key == TransmissionFramer.START_KEY;
+                }
+                else if (valid && key == TransmissionFramer.END_KEY) {
+                    inTransmission = false;
+                    foundTransmission = true;
+                    outLength = append(out, outBuf, outLength, '\n');
+                }
+                else {
+                    int letter = valid ? table.decode(key) : -1;
+                    if (!valid && length == 1) {
+                        letter = table.decodeSymbol(letterChars[0]);
+                    }
+                    if (letter < 0) {
+                        out.write(outBuf, 0, outLength);
+                        out.flush();
+                        throw new InvalidCharacterException(new String(letterChars, 0, Math.min(length, letterChars.length)));
+                    }
+                    if (Character.isBmpCodePoint(letter)) {
+                        outLength = append(out, outBuf, outLength, (char) letter);
+                    }
+                    else {
+                        outLength = append(out, outBuf, outLength, Character.highSurrogate(letter));
+                        outLength = append(out, outBuf, outLength, Character.lowSurrogate(letter));
+                    }
+                }
+                key = 1;
+                length = 0;
+                valid = true;
+            }
+        }
+        out.write(outBuf, 0, outLength);
+        out.flush();
+        if (inTransmission || !foundTransmission) {
+            throw new InvalidTransmissionException();
+        }
+    }
+
+    /**
+     * Appends a String to the output buffer, writing the buffer out first if
+     * it would overflow.
+     *
+     * @return the new length of the buffer
+     */
+    private static int append(Writer out, char[] buf, int length, String s) throws IOException {
+        if (length + s.length() > buf.length) {
+            out.write(buf, 0, length);
+            length = 0;
+        }
+        s.getChars(0, s.length(), buf, length);
+        return length + s.length();
+    }
+
+    /**
+     * Appends a character to the output buffer, writing the buffer out first if
+     * it is full.
+     *
+     * @return the new length of the buffer
+     */
+    private static int append(Writer out, char[] buf, int length, char c) throws IOException {
+        if (length == buf.length) {
+            out.write(buf, 0, length);
+            length = 0;
+        }
+        buf[length] = c;
+        return length + 1;
+    }
+}
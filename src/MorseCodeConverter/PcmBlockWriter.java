@@ -0,0 +1,114 @@
+package MorseCodeConverter;
+
+import java.util.Arrays;
+import javax.sound.sampled.SourceDataLine;
+
+/**
+ * Feeds 8 bit mono audio to a SourceDataLine in large blocks. Tones and
+ * silences are rendered into one reusable buffer, which is only written to the
+ * line when it fills up (or is flushed), so the line gets a few big writes
+ * instead of one per sample. The line is started on the first write and left
+ * running until the caller is done with it.
+ *
+ * @author Jacob White
+ */
+public final class PcmBlockWriter {
+    //Samples rendered before each write to the line
+    public static final int DEFAULT_BLOCK_SIZE = 4096;
+
+    private final SourceDataLine line;
+    private final byte[] block;
+    private int filled = 0;
+    private long samplesWritten = 0;
+
+    /**
+     * @param line an open line with an 8 bit mono signed format
+     */
+    public PcmBlockWriter(SourceDataLine line) {
+        this(line, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * @param line an open line with an 8 bit mono signed format
+     * @param blockSize samples rendered before each write to the line
+     */
+    public PcmBlockWriter(SourceDataLine line, int blockSize) {
+        this.line = line;
+        this.block = new byte[blockSize];
+    }
+
+    /**
+     * Renders a tone from the oscillator.
+     *
+     * @param osc the oscillator, with the frequency of the tone
+     * @param samples length of the tone
+     * @param vol volume between 0.0 and 1.0
+     */
+    public void tone(ToneOscillator osc, long samples, double vol) {
+        while (samples > 0) {
+            int length = (int) Math.min(samples, block.length - filled);
+            osc.render(block, filled, length, vol);
+            filled += length;
+            samples -= length;
+            if (filled == block.length) {
+                flush();
+            }
+        }
+    }
+
+    /**
+     * Renders silence.
+     *
+     * @param samples length of the silence
+     */
+    public void silence(long samples) {
+        while (samples > 0) {
+            int length = (int) Math.min(samples, block.length - filled);
+            //Silence is 0 for signed samples
+            Arrays.fill(block, filled, filled + length, (byte) 0);
+            filled += length;
+            samples -= length;
+            if (filled == block.length) {
+                flush();
+            }
+        }
+    }
+
+    /**
+     * Writes everything rendered so far to the line, starting it if it isn't
+     * already running. Blocks until the line has room for it.
+     */
+    public void flush() {
+        if (filled > 0) {
+            if (!line.isRunning()) {
+                line.start();
+            }
+            line.write(block, 0, filled);
+            samplesWritten += filled;
+            filled = 0;
+        }
+    }
+
+    /**
+     * Writes everything rendered so far and waits until the line has played it.
+     * The line is left running.
+     */
+    public void drain() {
+        flush();
+        line.drain();
+    }
+
+    /**
+     * @return the number of samples written to the line
+     */
+    public long getSamplesWritten() {
+        return samplesWritten;
+    }
+
+    /**
+     * @return the line being written to
+     */
+    public SourceDataLine getLine() {
+        return line;
+    }
+}
@@ -16,6 +16,8 @@ public class PlaySoundUtils {
 
   public static int SAMPLE_RATE = 8000;
   public static int fadeDur = 80;
+  //Writer for the line tones were last played on
+  private static PcmBlockWriter lastWriter = null;
 
   public static void tone(int hz, int msecs, SourceDataLine line) 
      throws LineUnavailableException 
@@ -33,23 +35,34 @@ public class PlaySoundUtils {
    * @throws LineUnavailableException 
    */
   public static void tone(int hz, int msecs, double vol, SourceDataLine line) throws LineUnavailableException {
-    byte[] buf = new byte[1];
-    double duration = msecs*SAMPLE_RATE/1000; //duration in number of samples
-    for (double i = 0; i < duration; i++) {
-        double fadeRate = 1.0; 
-//        if (i < fadeDur) { //Linear fade-in
-//            fadeRate = i / fadeDur;
-//        }
-//        else if (i > (duration - fadeDur)){ //Linear fade-out
-//            fadeRate = (duration - i) / fadeDur;
-//        }
-        double angle = i / (SAMPLE_RATE / hz) * 2.0 * Math.PI;
-        //127.0 to account for 8-bit audio sample for the line
-        buf[0] = (byte) Math.round(Math.sin(angle) * 127.0 * vol * fadeRate);
-        line.start();
-        line.write(buf, 0, 1); //byte array, byte offset, data byte
+    tone(new ToneOscillator(hz, line.getFormat().getSampleRate()), msecs, vol, writerFor(line));
+  }
+
+  /**
+   * Returns the block writer for the line, reusing the last one made if it was
+   * for the same line, so playing tone after tone doesn't allocate a new block
+   * for each.
+   */
+  private static synchronized PcmBlockWriter writerFor(SourceDataLine line) {
+    if (lastWriter == null || lastWriter.getLine() != line) {
+      lastWriter = new PcmBlockWriter(line);
     }
-    line.drain();
-    line.stop();
+    return lastWriter;
+  }
+
+  /**
+   * Plays a tone from an oscillator through a block writer, and waits until it
+   * has been played. The line is left running, so that it doesn't have to be
+   * restarted for the next tone.
+   *
+   * @param osc the oscillator, with the frequency of the tone
+   * @param msecs
+   * @param vol
+   * @param writer writer for the line to play on
+   */
+  public static void tone(ToneOscillator osc, int msecs, double vol, PcmBlockWriter writer) {
+    float sampleRate = writer.getLine().getFormat().getSampleRate();
+    writer.tone(osc, Math.round(msecs*sampleRate/1000), vol); //duration in number of samples
+    writer.drain();
   }
 }
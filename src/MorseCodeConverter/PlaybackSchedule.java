@@ -0,0 +1,79 @@
+package MorseCodeConverter;
+
+import java.util.Arrays;
+
+/**
+ * The symbols of a transmission (dots, dashes, spaces and word separators) and
+ * the sample each one starts at, so a display can show what is being heard by
+ * looking up the line's frame position instead of being told about every
+ * symbol as it plays.
+ *
+ * @author Jacob White
+ */
+public final class PlaybackSchedule {
+    private final String symbols;
+    private final long[] startFrames;
+
+    /**
+     * @param symbols the symbols, in order
+     * @param startFrames the sample each symbol starts at, in increasing order
+     */
+    public PlaybackSchedule(String symbols, long[] startFrames) {
+        this.symbols = symbols;
+        this.startFrames = startFrames;
+    }
+
+    /**
+     * @return the number of symbols
+     */
+    public int size() {
+        return symbols.length();
+    }
+
+    /**
+     * @param i which symbol (0 for the first)
+     * @return the symbol
+     */
+    public char getSymbol(int i) {
+        return symbols.charAt(i);
+    }
+
+    /**
+     * @param i which symbol (0 for the first)
+     * @return the sample the symbol starts at
+     */
+    public long getStartFrame(int i) {
+        return startFrames[i];
+    }
+
+    /**
+     * Returns the symbols between the indices, e.g. the ones that started since
+     * the display was last updated.
+     *
+     * @param from index of the first symbol
+     * @param to index after the last symbol
+     * @return the symbols
+     */
+    public String getSymbols(int from, int to) {
+        return symbols.substring(from, to);
+    }
+
+    /**
+     * Returns the number of symbols that have started once the given number
+     * of samples have been played.
+     *
+     * @param frame number of samples played
+     * @return the number of symbols
+     */
+    public int symbolsStartedBy(long frame) {
+        int index = Arrays.binarySearch(startFrames, frame);
+        if (index < 0) {
+            return -index - 1;
+        }
+        //Symbols that take no time share a start, so count every one at this frame
+        while (index < startFrames.length && startFrames[index] <= frame) {
+            index++;
+        }
+        return index;
+    }
+}
@@ -0,0 +1,87 @@
+package MorseCodeConverter;
+
+/**
+ * How long a transmission took to play compared to how long it should have
+ * taken at its WPM (its nominal length). Measured from the first tone until
+ * the line finished playing the last sample.
+ *
+ * When the transmission was played by a LineFeeder, also how long it took from
+ * asking to play it until the first sample was heard, and how many times the
+ * line ran out of samples partway through.
+ *
+ * @author Jacob White
+ */
+public final class PlaybackTiming {
+    private final long nominalNanos;
+    private final long actualNanos;
+    private final long startLatencyNanos;
+    private final int underruns;
+
+    /**
+     * @param nominalNanos how long the transmission should have taken
+     * @param actualNanos how long it took
+     */
+    public PlaybackTiming(long nominalNanos, long actualNanos) {
+        this(nominalNanos, actualNanos, -1, 0);
+    }
+
+    /**
+     * @param nominalNanos how long the transmission should have taken
+     * @param actualNanos how long it took
+     * @param startLatencyNanos time until the first sample was heard, or -1 if unknown
+     * @param underruns times the line ran out of samples
+     */
+    public PlaybackTiming(long nominalNanos, long actualNanos, long startLatencyNanos, int underruns) {
+        this.nominalNanos = nominalNanos;
+        this.actualNanos = actualNanos;
+        this.startLatencyNanos = startLatencyNanos;
+        this.underruns = underruns;
+    }
+
+    /**
+     * @return how long the transmission should have taken, in milliseconds
+     */
+    public double getNominalMillis() {
+        return nominalNanos / 1e6;
+    }
+
+    /**
+     * @return how long the transmission took, in milliseconds
+     */
+    public double getActualMillis() {
+        return actualNanos / 1e6;
+    }
+
+    /**
+     * @return how much longer (or shorter, if negative) the transmission took
+     * than it should have, in milliseconds
+     */
+    public double getDriftMillis() {
+        return (actualNanos - nominalNanos) / 1e6;
+    }
+
+    /**
+     * @return time from asking to play the transmission until the first sample
+     * was heard, in milliseconds, or -1 if it wasn't measured
+     */
+    public double getStartLatencyMillis() {
+        return (startLatencyNanos < 0) ? -1 : startLatencyNanos / 1e6;
+    }
+
+    /**
+     * @return the number of times the line ran out of samples while playing
+     */
+    public int getUnderruns() {
+        return underruns;
+    }
+
+    @Override
+    public String toString() {
+        String timing = String.format("nominal %.1f ms, actual %.1f ms, drift %+.1f ms",
+                getNominalMillis(), getActualMillis(), getDriftMillis());
+        if (startLatencyNanos >= 0) {
+            timing += String.format(", start latency %.1f ms, %d underruns", getStartLatencyMillis(), underruns);
+        }
+        return timing;
+    }
+}
@@ -0,0 +1,432 @@
+package MorseCodeConverter;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Directory of rendered transmissions, kept between runs so messages that are
+ * played over and over (beacons, callsigns, sign-offs) are only rendered once.
+ * Each file holds the raw 8 bit samples of one transmission, named by a SHA-256
+ * hash of the Morse code and everything else the samples depend on (WPM,
+ * Farnsworth WPM, weight, frequency, volume and sample format), so a change to
+ * any of them is a different file. Hits are memory-mapped, so the samples are
+ * played straight from the page cache without being copied onto the heap.
+ * Misses can be rendered into the cache on a background thread (see
+ * warmUpLater), so playing a message the first time doesn't wait for it.
+ *
+ * When the files take more than the size limit, the one that was used least
+ * recently is deleted. The order is kept in each file's modified time, so it
+ * carries over to the next run. Safe to use from several threads at once.
+ *
+ * @author Jacob White
+ */
+public final class RenderCache {
+    //Changed whenever the rendered samples change, so old files aren't used
+    private static final int FORMAT_VERSION = 1;
+    private static final String SUFFIX = ".pcm";
+
+    private final Path directory;
+    private final long maxBytes;
+    //File name to size, in access order so the eldest is the least recently used
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes = 0;
+    //Files being rendered by warmUpLater
+    private final Set<String> pending = new HashSet<>();
+    private final ExecutorService renderer = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "RenderCache renderer");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * Opens the cache in a directory, creating it if it doesn't exist. Files
+     * already in it are kept (and deleted if there are too many).
+     *
+     * @param directory where the rendered transmissions are kept
+     * @param maxBytes most bytes of samples kept at once
+     * @throws IOException if the directory can't be created or read
+     */
+    public RenderCache(File directory, long maxBytes) throws IOException {
+        this.directory = directory.toPath();
+        this.maxBytes = maxBytes;
+        Files.createDirectories(this.directory);
+        Map<Path, FileTime> times = new HashMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory, "*" + SUFFIX)) {
+            for (Path file : stream) {
+                times.put(file, Files.getLastModifiedTime(file));
+            }
+        }
+        //Oldest first, so the entries start out in the order they were last used
+        List<Path> files = new ArrayList<>(times.keySet());
+        files.sort((a, b) -> times.get(a).compareTo(times.get(b)));
+        for (Path file : files) {
+            long size = Files.size(file);
+            entries.put(file.getFileName().toString(), size);
+            totalBytes += size;
+        }
+        synchronized (this) {
+            evict(null);
+        }
+    }
+
+    /**
+     * Returns the samples of the Morse code input (with starting & ending
+     * signals) at the current settings of the TextToAudio, rendering them into
+     * the cache first if they aren't in it.
+     *
+     * @param tta the settings to render at
+     * @param input the Morse code String
+     * @return read-only buffer of 8 bit samples mapped from the file, ready to be read
+     * @throws IOException if the file can't be written or mapped
+     * @throws MorseCodeConverter.InvalidTransmissionException
+     */
+    public ByteBuffer get(TextToAudio tta, String input) throws IOException, InvalidTransmissionException {
+        ByteBuffer samples = lookUp(tta, input);
+        if (samples != null) {
+            return samples;
+        }
+        Path file = directory.resolve(fileName(tta, input));
+        store(tta.getAudioInputStream(input), file);
+        return map(file);
+    }
+
+    /**
+     * Returns the samples of the Morse code input (with starting & ending
+     * signals) at the current settings of the TextToAudio, if they are in the
+     * cache. Nothing is rendered.
+     *
+     * @param tta the settings the samples were rendered at
+     * @param input the Morse code String
+     * @return read-only buffer of 8 bit samples mapped from the file, ready to
+     * be read, or null if they aren't cached
+     * @throws IOException if the file can't be mapped
+     * @throws MorseCodeConverter.InvalidTransmissionException
+     */
+    public ByteBuffer lookUp(TextToAudio tta, String input) throws IOException, InvalidTransmissionException {
+        String name = fileName(tta, input);
+        Path file = directory.resolve(name);
+        synchronized (this) {
+            if (isCached(name, file)) {
+                //Moves it to the end of the access order
+                entries.get(name);
+                hits++;
+                Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+                return map(file);
+            }
+            misses++;
+            return null;
+        }
+    }
+
+    /**
+     * Renders the Morse code input into the cache if it isn't already in it.
+     *
+     * @param tta the settings to render at
+     * @param input the Morse code String
+     * @return true if it had to be rendered
+     * @throws IOException if the file can't be written
+     * @throws MorseCodeConverter.InvalidTransmissionException
+     */
+    public boolean warmUp(TextToAudio tta, String input) throws IOException, InvalidTransmissionException {
+        String name = fileName(tta, input);
+        Path file = directory.resolve(name);
+        synchronized (this) {
+            if (isCached(name, file)) {
+                return false;
+            }
+        }
+        store(tta.getAudioInputStream(input), file);
+        return true;
+    }
+
+    /**
+     * Renders the Morse code input into the cache on a background thread, if
+     * it isn't already in it or being rendered. The settings of the TextToAudio
+     * are taken now, so changing them afterwards doesn't change what is stored.
+     *
+     * @param tta the settings to render at
+     * @param input the Morse code String
+     * @throws MorseCodeConverter.InvalidTransmissionException
+     */
+    public void warmUpLater(TextToAudio tta, String input) throws InvalidTransmissionException {
+        //The name and the samples both come from the same settings, even if they change meanwhile
+        TextToAudio settings = tta.snapshot();
+        String name = fileName(settings, input);
+        Path file = directory.resolve(name);
+        synchronized (this) {
+            if (isCached(name, file) || !pending.add(name)) {
+                return;
+            }
+        }
+        //Nothing is rendered until the stream is read, on the background thread
+        InputStream samples = settings.getAudioInputStream(input);
+        renderer.execute(() -> {
+            try {
+                store(samples, file);
+            }
+            catch (IOException e) {
+                //Left uncached; it is rendered while playing instead
+            }
+            finally {
+                synchronized (this) {
+                    pending.remove(name);
+                }
+            }
+        });
+    }
+
+    /**
+     * @param tta the settings the samples would be rendered at
+     * @param input the Morse code String
+     * @return true if the samples are in the cache
+     * @throws MorseCodeConverter.InvalidTransmissionException
+     */
+    public boolean contains(TextToAudio tta, String input) throws InvalidTransmissionException {
+        String name = fileName(tta, input);
+        synchronized (this) {
+            return isCached(name, directory.resolve(name));
+        }
+    }
+
+    /**
+     * Stores samples that have already been rendered (e.g. to play them), so
+     * they don't have to be rendered again to cache them.
+     *
+     * @param tta the settings the samples were rendered at
+     * @param input the Morse code String
+     * @param samples the 8 bit samples, from the buffer's position to its limit
+     * (which don't change)
+     * @throws IOException if the file can't be written
+     * @throws MorseCodeConverter.InvalidTransmissionException
+     */
+    public void put(TextToAudio tta, String input, ByteBuffer samples) throws IOException, InvalidTransmissionException {
+        Path file = directory.resolve(fileName(tta, input));
+        ByteBuffer remaining = samples.duplicate();
+        Path temp = Files.createTempFile(directory, "render", ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                while (remaining.hasRemaining()) {
+                    channel.write(remaining);
+                }
+            }
+            commit(temp, file);
+        }
+        finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Returns true if the file is in the cache. If its entry is there but the
+     * file isn't (it was deleted from outside), the entry is dropped so its
+     * size no longer counts.
+     */
+    private boolean isCached(String name, Path file) {
+        //containsKey doesn't count as a use, unlike get
+        if (!entries.containsKey(name)) {
+            return false;
+        }
+        if (Files.exists(file)) {
+            return true;
+        }
+        totalBytes -= entries.remove(name);
+        return false;
+    }
+
+    /**
+     * Renders the samples to a temporary file, then moves it into place so a
+     * partly written file is never mapped.
+     */
+    private void store(InputStream samples, Path file) throws IOException {
+        Path temp = Files.createTempFile(directory, "render", ".tmp");
+        try {
+            try (InputStream in = samples) {
+                Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            commit(temp, file);
+        }
+        finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Moves a fully written temporary file into place and adds it to the
+     * entries, throwing out old ones if the cache is over its size limit.
+     */
+    private void commit(Path temp, Path file) throws IOException {
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        long size = Files.size(file);
+        synchronized (this) {
+            Long old = entries.put(file.getFileName().toString(), size);
+            totalBytes += size - (old == null ? 0 : old);
+            evict(file.getFileName().toString());
+        }
+    }
+
+    /**
+     * Deletes the least recently used files until the rest fit in the size
+     * limit, except the one just stored.
+     */
+    private void evict(String keep) {
+        Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            if (eldest.getKey().equals(keep)) {
+                continue;
+            }
+            try {
+                Files.deleteIfExists(directory.resolve(eldest.getKey()));
+            }
+            catch (IOException e) {
+                //Still mapped somewhere (on some systems); try again next time
+                continue;
+            }
+            totalBytes -= eldest.getValue();
+            it.remove();
+        }
+    }
+
+    /**
+     * Maps the whole file read-only. The mapping stays valid after the channel
+     * is closed.
+     */
+    private static ByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Hashes everything the samples depend on into a file name.
+     */
+    private static String fileName(TextToAudio tta, String input) throws InvalidTransmissionException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e) {
+            //Every Java platform has SHA-256
+            throw new IllegalStateException(e);
+        }
+        byte[] hash = digest.digest((FORMAT_VERSION + "|" + tta.renderKey(input)).getBytes(StandardCharsets.UTF_8));
+        StringBuilder name = new StringBuilder(hash.length * 2 + SUFFIX.length());
+        for (byte b : hash) {
+            name.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return name.append(SUFFIX).toString();
+    }
+
+    /**
+     * @return the number of lookups that found the samples
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of lookups that had to render the samples
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the number of transmissions currently cached
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the bytes of samples currently cached
+     */
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * @return the most bytes of samples kept at once
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Pre-renders a list of messages into the cache, so the first time each is
+     * played is a hit.
+     *
+     * Usage: RenderCache directory maxMegabytes messageFile [wpm [frequency [volume]]]
+     *
+     * The message file has one plain text message per line, converted to Morse
+     * code with the starting & ending signals the same way the window does.
+     *
+     * @param args the command line arguments
+     * @throws IOException if the cache or message file can't be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: RenderCache directory maxMegabytes messageFile [wpm [frequency [volume]]]");
+            System.exit(2);
+        }
+        RenderCache cache = new RenderCache(new File(args[0]), Long.parseLong(args[1]) << 20);
+        TextToAudio tta = new TextToAudio();
+        if (args.length > 3) {
+            tta.setWPM(Integer.parseInt(args[3]));
+        }
+        if (args.length > 4) {
+            tta.setFrequency(Integer.parseInt(args[4]));
+        }
+        if (args.length > 5) {
+            tta.setVolume(Double.parseDouble(args[5]));
+        }
+        TextToMorse ttm = new TextToMorse();
+        int rendered = 0;
+        int total = 0;
+        try (BufferedReader reader = Files.newBufferedReader(new File(args[2]).toPath(), StandardCharsets.UTF_8)) {
+            String message;
+            while ((message = reader.readLine()) != null) {
+                if (message.trim().isEmpty()) {
+                    continue;
+                }
+                total++;
+                try {
+                    if (cache.warmUp(tta, ttm.toString(message))) {
+                        rendered++;
+                    }
+                }
+                catch (InvalidCharacterException | InvalidArraysException | InvalidTransmissionException e) {
+                    System.err.println("Skipped \"" + message + "\": " + e.getMessage());
+                }
+            }
+        }
+        System.out.println(rendered + " of " + total + " messages rendered, "
+                + cache.size() + " cached (" + (cache.getTotalBytes() >> 10) + " KiB)");
+    }
+}
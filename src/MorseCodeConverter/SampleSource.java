@@ -0,0 +1,20 @@
+package MorseCodeConverter;
+
+/**
+ * Anything that produces 8 bit samples in order, a block at a time, for a
+ * LineFeeder to play.
+ *
+ * @author Jacob White
+ */
+interface SampleSource {
+
+    /**
+     * Produces the next samples.
+     *
+     * @param buf where the samples are written
+     * @param offset index of the first sample
+     * @param length most samples to produce
+     * @return the number of samples produced, or -1 if there are no more
+     */
+    int render(byte[] buf, int offset, int length);
+}
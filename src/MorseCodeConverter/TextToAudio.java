@@ -1,8 +1,10 @@
 package MorseCodeConverter;
 
 import static MorseCodeConverter.PlaySoundUtils.SAMPLE_RATE;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import javax.sound.sampled.*;
 
 /**
@@ -14,36 +16,50 @@ import javax.sound.sampled.*;
  */
 
 public class TextToAudio {
-    private static int DOT_FREQ = 1000; // Dot frequency (Hz)
+    private int DOT_FREQ = 1000; // Dot frequency (Hz)
     private int WPM = 20; //Words per minute, at ~50 dot lengths per word
     private double volume = 1.0; //Default volume is 1.0
-    private int dotLength = 1200 / WPM; // Unit of time for Morse (msec)
-    private int dashLength = 3*dotLength; //Play dash for 3 dot lengths
-    private int dotSpacing = dotLength; //Pause 1 dot length between dots or dashes
-    private int letterSpacing = 3*dotSpacing; //Pause 3 dot lengths between letters
-    private int wordSpacing = 7*dotSpacing; //Pause 7 dot lengths between words
+    private float sampleRate = SAMPLE_RATE; //Samples per second of playback
+    private boolean sampleAccurate = true; //Write pauses as silence instead of sleeping
+    private int bufferMillis = 0; //Length of the line's buffer (msec), or 0 for the default
+    private double targetFill = 0.75; //Fraction of the line's buffer kept filled while playing
+    private volatile PlaybackTiming lastTiming = null; //Timing of the last transmission played
+    private AudioLinePool linePool = null; //Open lines to play on, instead of opening a new one each time
+    private int effectiveWPM = 0; //Overall WPM with Farnsworth spacing, or 0 for none
+    private int weight = KeyingTimeline.NORMAL_WEIGHT; //Percentage of each dot and the gap after it that the key is down
+    private RenderCache renderCache = null; //Rendered transmissions to play from, instead of rendering each time
     
     /**
      * Set the words per minute/playback speed 
      * (based on the convention of 50 dot lengths per word, e.g. PARIS or CODEX)
      * @param wpm
      */
-    public void setWPM(int wpm) {
+    public synchronized void setWPM(int wpm) {
         WPM = wpm;
-        
-        //Update variables derived from WPM
-        dotLength = 1200 / WPM;
-        dashLength = 3*dotLength;
-        dotSpacing = dotLength;
-        letterSpacing = 3*dotSpacing;
-        wordSpacing = 7*dotSpacing;
+    }
+    
+    /**
+     * Sets the overall words per minute for Farnsworth spacing: letters are still
+     * sent at the WPM, but the gaps between letters and words are stretched
+     * @param wpm overall words per minute, or 0 to send everything at the WPM
+     */
+    public synchronized void setFarnsworthWPM(int wpm) {
+        effectiveWPM = wpm;
+    }
+    
+    /**
+     * Sets the weighting of the dots and dashes (50 is normal, more is heavier)
+     * @param percent percentage of each dot and the gap after it that the key is down
+     */
+    public synchronized void setWeight(int percent) {
+        weight = percent;
     }
     
     /***
      * Set the frequency of playback
      * @param freq 
      */
-    public void setFrequency(int freq) {
+    public synchronized void setFrequency(int freq) {
         DOT_FREQ = freq;
     }
     
@@ -51,10 +67,76 @@ public class TextToAudio {
      * Sets the volume of playback
      * @param vol 
      */
-    public void setVolume(double vol) {
+    public synchronized void setVolume(double vol) {
         volume = vol;
     }
     
+    /**
+     * Sets the sample rate of playback (e.g. 8000 or 48000)
+     * @param rate samples per second
+     */
+    public synchronized void setSampleRate(float rate) {
+        sampleRate = rate;
+    }
+    
+    /**
+     * Sets whether pauses are written to the line as silence, so the whole
+     * transmission is one continuous stream timed to the sample (the default),
+     * or timed by sleeping between tones
+     * @param accurate true to write pauses as silence
+     */
+    public void setSampleAccurate(boolean accurate) {
+        sampleAccurate = accurate;
+    }
+    
+    /**
+     * Sets the length of the buffer of the lines opened for playback. A shorter
+     * buffer starts playing sooner, but is more likely to run out of samples if
+     * rendering falls behind. Lines from a pool keep the pool's buffer size.
+     * @param millis length of the buffer (msec), or 0 for the line's default
+     */
+    public void setBufferMillis(int millis) {
+        bufferMillis = millis;
+    }
+    
+    /**
+     * Sets how full the line's buffer is kept while playing sample-accurately
+     * (0.75 by default)
+     * @param fraction fraction of the buffer, between 0.0 and 1.0
+     */
+    public void setTargetFill(double fraction) {
+        targetFill = fraction;
+    }
+    
+    /**
+     * Returns how long the last transmission took to play, compared to how long
+     * it should have taken at the current WPM. For sample-accurate playback, also
+     * how long it took to start and how many times the line ran out of samples
+     * @return the timing, or null if nothing has been played
+     */
+    public PlaybackTiming getLastTiming() {
+        return lastTiming;
+    }
+    
+    /**
+     * Sets a pool of open lines to play on. Lines are only taken from the pool
+     * if they have the format of playback (8 bit mono at the sample rate).
+     * @param pool the pool, or null to open a new line for every transmission
+     */
+    public void setLinePool(AudioLinePool pool) {
+        linePool = pool;
+    }
+    
+    /**
+     * Sets a cache of rendered transmissions for sample-accurate playback to
+     * play from. Transmissions that aren't in it are rendered while playing as
+     * usual, and into the cache in the background for next time
+     * @param cache the cache, or null to render while playing
+     */
+    public synchronized void setRenderCache(RenderCache cache) {
+        renderCache = cache;
+    }
+    
     public void playAudio(String input) throws LineUnavailableException, InterruptedException, InvalidTransmissionException {
         playAudio(input, null);
     }
@@ -72,81 +154,356 @@ public class TextToAudio {
      * @throws MorseCodeConverter.InvalidTransmissionException 
      */
     public void playAudio(String input, TextToAudioProcessor ttap) throws LineUnavailableException, InterruptedException, InvalidTransmissionException {
-        String msg = "";
-        Matcher msgMatcher = Pattern.compile("(.*[^.\\-])?(-\\.-\\.- (.*?) \\.\\.\\.-\\.-)").matcher(input);
-        if (msgMatcher.find())
-        {
-            //Takes the included Morse message in (.*?)
-            msg = msgMatcher.group(2);
+        long requestTime = System.nanoTime();
+        KeyingTimeline timeline = compileTimeline(input);
+        ByteBuffer samples = sampleAccurate ? cachedSamples(input) : null;
+        AudioFormat af = getFormat();
+        //Use a line from the pool if it has lines of this format
+        AudioLinePool pool = (linePool != null && linePool.getFormat().matches(af)) ? linePool : null;
+        SourceDataLine line;
+        if (pool != null) {
+            line = pool.acquire();
         }
         else {
-            
-            throw new InvalidTransmissionException();
+            line = openLine(af);
         }
-        AudioFormat af = new AudioFormat(SAMPLE_RATE, 8, 1, true, false); //Sample rate, sample size, channels, signed, bigEndian
-        SourceDataLine line = AudioSystem.getSourceDataLine(af);
-        line.open(af);
-        char[] morseChars = msg.toCharArray();
-        for (char c: morseChars) {
-            if (ttap == null) {
-                switch (c) {
-                    case '.':
-                        System.out.print(".");
-                        PlaySoundUtils.tone(DOT_FREQ, dotLength, volume, line);
-                        Thread.sleep(dotSpacing);
-                        break;
-                    case '-':
-                        System.out.print("-");
-                        PlaySoundUtils.tone(DOT_FREQ, dashLength, volume, line);
-                        Thread.sleep(dotSpacing);
-                        break;
-                    case ' ':
-                        System.out.print(" ");
-                        Thread.sleep(letterSpacing - dotSpacing);
-                        //Because there's a space after every dot or dash, it has to be taken baack out
-                        break;
-                    case '|':
-                        System.out.print("|");
-                        Thread.sleep(wordSpacing - dotSpacing);
-                        break;
-                    case '/':
-                        System.out.print("/");
-                        Thread.sleep(wordSpacing - dotSpacing);
-                        break;
-                    default:
-                        break;
-                }
+        //Whether the line can be used again, unless something went wrong with it
+        boolean lineOk = false;
+        try {
+            playTransmission(timeline, samples, line, ttap, requestTime);
+            lineOk = true;
+        }
+        catch (InterruptedException e) {
+            lineOk = true;
+            throw e;
+        }
+        finally {
+            if (pool == null) {
+                line.stop();
+                line.close();
+            }
+            else if (lineOk) {
+                pool.release(line);
             }
             else {
-                switch (c) {
-                    case '.':
-                        ttap.outputText(".");
-                        PlaySoundUtils.tone(DOT_FREQ, dotLength, volume, line);
-                        Thread.sleep(dotSpacing);
-                        break;
-                    case '-':
-                        ttap.outputText("-");
-                        PlaySoundUtils.tone(DOT_FREQ, dashLength, volume, line);
-                        Thread.sleep(dotSpacing);
-                        break;
-                    case ' ':
-                        ttap.outputText(" ");
-                        Thread.sleep(letterSpacing - dotSpacing);
-                        //Because there's a space after every dot or dash, it has to be taken baack out
-                        break;
-                    case '|':
-                        ttap.outputText("|");
-                        Thread.sleep(wordSpacing - dotSpacing);
-                        break;
-                    case '/':
-                        ttap.outputText("/");
-                        Thread.sleep(wordSpacing - dotSpacing);
-                        break;
-                    default:
-                        break;
+                pool.invalidate(line);
+            }
+        }
+    }
+
+    /**
+     * Returns the samples of the transmission from the render cache, or null if
+     * there is no cache or they aren't in it (so the samples are rendered while
+     * playing instead). A miss is rendered into the cache in the background
+     */
+    private ByteBuffer cachedSamples(String input) throws InvalidTransmissionException {
+        RenderCache cache = renderCache;
+        if (cache == null) {
+            return null;
+        }
+        try {
+            ByteBuffer samples = cache.lookUp(this, input);
+            if (samples == null) {
+                cache.warmUpLater(this, input);
+            }
+            return samples;
+        }
+        catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Plays the Morse message on an open line, and waits until it has been played
+     * 
+     * @param samples the rendered transmission, or null to render it while playing
+     * @param requestTime System.nanoTime when playAudio was called
+     */
+    private void playTransmission(KeyingTimeline timeline, ByteBuffer samples, SourceDataLine line, TextToAudioProcessor ttap, long requestTime) throws InterruptedException {
+        if (sampleAccurate) {
+            feedTransmission(timeline, samples, line, ttap, requestTime);
+            return;
+        }
+        //One oscillator for the whole transmission, so the phase carries on between tones
+        ToneOscillator osc = new ToneOscillator(DOT_FREQ, sampleRate);
+        //Tones are written in blocks, and the line keeps running until the end
+        PcmBlockWriter writer = new PcmBlockWriter(line);
+        PlaybackSchedule schedule = timeline.getSchedule(sampleRate);
+        int symbolsShown = 0;
+        long startTime = System.nanoTime();
+        for (int i = 0; i < timeline.getElementCount(); i++) {
+            //Output the symbols up to and including this element
+            int started = schedule.symbolsStartedBy(KeyingTimeline.toFrame(timeline.getKeyDownNanos(i), sampleRate));
+            if (started > symbolsShown) {
+                outputText(schedule.getSymbols(symbolsShown, started), ttap);
+                symbolsShown = started;
+            }
+            long keyUp = timeline.getKeyUpNanos(i);
+            long nextKeyDown = (i + 1 < timeline.getElementCount()) ? timeline.getKeyDownNanos(i + 1) : timeline.getLengthNanos();
+            PlaySoundUtils.tone(osc, (int) Math.round((keyUp - timeline.getKeyDownNanos(i)) / 1e6), volume, writer);
+            Thread.sleep(Math.round((nextKeyDown - keyUp) / 1e6));
+        }
+        if (schedule.size() > symbolsShown) {
+            outputText(schedule.getSymbols(symbolsShown, schedule.size()), ttap);
+        }
+        writer.drain();
+        lastTiming = new PlaybackTiming(timeline.getLengthNanos(), System.nanoTime() - startTime);
+    }
+
+    /**
+     * Plays the Morse message as one continuous stream of samples, rendered on a
+     * thread that keeps the line filled to the target. The text area follows the
+     * line's playback position on its own; otherwise each symbol is printed once
+     * the line starts playing it
+     * 
+     * @param samples the rendered transmission, or null to render it while playing
+     * @param requestTime System.nanoTime when playAudio was called
+     */
+    private void feedTransmission(KeyingTimeline timeline, ByteBuffer samples, SourceDataLine line, TextToAudioProcessor ttap, long requestTime) throws InterruptedException {
+        PlaybackSchedule schedule = timeline.getSchedule(sampleRate);
+        int fill = getTargetFill(line);
+        LineFeeder feeder = (samples != null) ? new LineFeeder(line, samples, fill)
+                : new LineFeeder(line, new MorseRenderer(timeline, DOT_FREQ, volume, sampleRate), fill);
+        feeder.start();
+        try {
+            if (ttap != null) {
+                ttap.followPlayback(schedule, feeder);
+            }
+            else {
+                for (int i = 0; i < schedule.size(); i++) {
+                    feeder.awaitFrame(schedule.getStartFrame(i));
+                    System.out.print(schedule.getSymbol(i));
                 }
             }
+            feeder.await();
+        }
+        catch (InterruptedException e) {
+            //Waits for the feeder to stop, so it's done with the line before playAudio releases it
+            feeder.cancel();
+            throw e;
+        }
+        long firstSample = feeder.getFirstSampleNanos();
+        long actual = (firstSample < 0) ? 0 : System.nanoTime() - firstSample;
+        long latency = (firstSample < 0) ? -1 : firstSample - requestTime;
+        lastTiming = new PlaybackTiming(timeline.getLengthNanos(), actual, latency, feeder.getUnderruns());
+    }
+
+    /**
+     * Keys the Morse code input (with starting & ending signals) in real time
+     * at the current timing, e.g. to drive a transmitter, instead of playing it
+     * 
+     * @param input the Morse code String
+     * @param listener receives the key down and up events
+     * @return how late each key down and up was
+     * @throws java.lang.InterruptedException 
+     * @throws MorseCodeConverter.InvalidTransmissionException 
+     */
+    public JitterHistogram key(String input, KeyerListener listener) throws InterruptedException, InvalidTransmissionException {
+        return new KeyerScheduler(compileTimeline(input), listener).run();
+    }
+    
+    /**
+     * Renders the audio from Morse code input (with starting & ending signals)
+     * to a file, as fast as it can be generated instead of in real time
+     * 
+     * @param input the Morse code String
+     * @param file the file to write
+     * @param type the file type (e.g. AudioFileFormat.Type.WAVE or AU)
+     * @return the number of bytes written
+     * @throws IOException if the file can't be written
+     * @throws MorseCodeConverter.InvalidTransmissionException 
+     */
+    public int writeAudio(String input, File file, AudioFileFormat.Type type) throws IOException, InvalidTransmissionException {
+        return AudioSystem.write(getAudioInputStream(input), type, file);
+    }
+    
+    /**
+     * Renders the audio from Morse code input (with starting & ending signals)
+     * to a stream in the format of an audio file
+     * 
+     * @param input the Morse code String
+     * @param out where the audio file is written
+     * @param type the file type (e.g. AudioFileFormat.Type.WAVE or AU)
+     * @return the number of bytes written
+     * @throws IOException if the stream can't be written
+     * @throws MorseCodeConverter.InvalidTransmissionException 
+     */
+    public int writeAudio(String input, OutputStream out, AudioFileFormat.Type type) throws IOException, InvalidTransmissionException {
+        return AudioSystem.write(getAudioInputStream(input), type, out);
+    }
+    
+    /**
+     * Returns the audio of the Morse code input (with starting & ending signals)
+     * as a stream that renders the samples as they are read. The frame length of
+     * the stream is the exact length of the transmission.
+     * 
+     * @param input the Morse code String
+     * @return the audio stream
+     * @throws MorseCodeConverter.InvalidTransmissionException 
+     */
+    public AudioInputStream getAudioInputStream(String input) throws InvalidTransmissionException {
+        MorseRenderer renderer = new MorseRenderer(compileTimeline(input), DOT_FREQ, volume, sampleRate);
+        return new AudioInputStream(new MorseSampleStream(renderer), getFormat(), renderer.getFrameLength());
+    }
+    
+    /**
+     * Renders the audio from Morse code input (with starting & ending signals)
+     * into a new buffer, using every core for long transmissions. The samples
+     * are exactly the same as getAudioInputStream gives.
+     * 
+     * @param input the Morse code String
+     * @param direct true to allocate the buffer outside the Java heap
+     * @return buffer of 8 bit samples, ready to be read
+     * @throws MorseCodeConverter.InvalidTransmissionException 
+     */
+    public ByteBuffer renderAudio(String input, boolean direct) throws InvalidTransmissionException {
+        return renderAudio(input, direct, sampleRate);
+    }
+    
+    /**
+     * Renders the audio into a new buffer at the given sample rate, instead of
+     * the one set
+     */
+    private ByteBuffer renderAudio(String input, boolean direct, float rate) throws InvalidTransmissionException {
+        MorseRenderer renderer = new MorseRenderer(compileTimeline(input), DOT_FREQ, volume, rate);
+        if (renderer.getFrameLength() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Transmission too long for a buffer: " + renderer.getFrameLength() + " samples");
+        }
+        int length = (int) renderer.getFrameLength();
+        ByteBuffer buffer = direct ? ByteBuffer.allocateDirect(length) : ByteBuffer.allocate(length);
+        renderer.renderParallel(buffer);
+        buffer.flip();
+        return buffer;
+    }
+    
+    /**
+     * Compiles the transmission in the Morse code input (with starting & ending
+     * signals) to the times the key goes down and up, at the current WPM,
+     * Farnsworth spacing and weighting
+     * 
+     * @param input the Morse code String
+     * @return the timeline
+     * @throws MorseCodeConverter.InvalidTransmissionException 
+     */
+    public KeyingTimeline compileTimeline(String input) throws InvalidTransmissionException {
+        int overallWPM = (effectiveWPM > 0) ? effectiveWPM : WPM;
+        return KeyingTimeline.compile(findTransmission(input), WPM, overallWPM, weight);
+    }
+    
+    /**
+     * Returns the format of playback
+     */
+    AudioFormat getFormat() {
+        return new AudioFormat(sampleRate, 8, 1, true, false); //Sample rate, sample size, channels, signed, bigEndian
+    }
+    
+    /**
+     * Returns a copy of the settings the samples depend on (and the render
+     * cache), all taken at once, so rendering on another thread can't mix
+     * settings from before and after a change
+     */
+    synchronized TextToAudio snapshot() {
+        TextToAudio copy = new TextToAudio();
+        copy.WPM = WPM;
+        copy.effectiveWPM = effectiveWPM;
+        copy.weight = weight;
+        copy.DOT_FREQ = DOT_FREQ;
+        copy.volume = volume;
+        copy.sampleRate = sampleRate;
+        copy.renderCache = renderCache;
+        return copy;
+    }
+    
+    /**
+     * Opens a new line of the format, with the buffer length that is set
+     */
+    SourceDataLine openLine(AudioFormat af) throws LineUnavailableException {
+        SourceDataLine line = AudioSystem.getSourceDataLine(af);
+        if (bufferMillis > 0) {
+            line.open(af, Math.round(af.getFrameRate() * bufferMillis / 1000));
+        }
+        else {
+            line.open(af);
+        }
+        return line;
+    }
+    
+    /**
+     * Returns the bytes of the line's buffer to keep filled while playing
+     */
+    int getTargetFill(SourceDataLine line) {
+        return (int) (line.getBufferSize() * targetFill);
+    }
+    
+    /**
+     * Returns the samples of the transmission at the given sample rate, from the
+     * render cache if it is the rate that is set and they are cached, or else
+     * rendered outside the Java heap (and then cached)
+     */
+    ByteBuffer renderSamples(String input, float rate) throws InvalidTransmissionException {
+        //The cache only holds samples at the rate that is set
+        RenderCache cache = (rate == sampleRate) ? renderCache : null;
+        if (cache != null) {
+            try {
+                ByteBuffer samples = cache.lookUp(this, input);
+                if (samples != null) {
+                    return samples;
+                }
+            }
+            catch (IOException e) {
+                //Rendered instead
+            }
+        }
+        ByteBuffer samples = renderAudio(input, true, rate);
+        if (cache != null) {
+            try {
+                //Cache the samples just rendered, instead of rendering them again for the cache
+                cache.put(this, input, samples);
+            }
+            catch (IOException e) {
+                //Left uncached
+            }
+        }
+        return samples;
+    }
+    
+    /**
+     * Describes everything the rendered samples of the input depend on, for
+     * RenderCache to hash
+     */
+    String renderKey(String input) throws InvalidTransmissionException {
+        return renderKey(input, sampleRate);
+    }
+    
+    /**
+     * Describes everything the samples of the input rendered at the given
+     * sample rate depend on
+     */
+    String renderKey(String input, float rate) throws InvalidTransmissionException {
+        return WPM + "|" + effectiveWPM + "|" + weight + "|" + DOT_FREQ + "|" + volume
+                + "|" + rate + "|8|1|signed|" + findTransmission(input);
+    }
+    
+    /**
+     * Takes the Morse message, including the starting and ending signals
+     */
+    private static String findTransmission(String input) throws InvalidTransmissionException {
+        TransmissionFramer framer = new TransmissionFramer(input);
+        if (!framer.find()) {
+            throw new InvalidTransmissionException();
+        }
+        return input.substring(framer.start(), framer.end());
+    }
+
+    /**
+     * Outputs a Morse symbol to the text area, or to the console if there is none
+     */
+    private static void outputText(String symbol, TextToAudioProcessor ttap) {
+        if (ttap == null) {
+            System.out.print(symbol);
+        }
+        else {
+            ttap.outputText(symbol);
         }
-        line.close();
     }
 }
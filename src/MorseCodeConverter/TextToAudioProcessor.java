@@ -7,6 +7,10 @@ import javax.sound.sampled.LineUnavailableException;
 /** SwingWorker that handles appending text to outputText as the 
  audio plays (converted in tta), and also prevents events from queueing 
  (from clicking convertButton repeatedly) as it plays. 
+ 
+ For sample-accurate playback, the text follows the playback position of the
+ line instead: a Swing Timer checks it at about the screen's refresh rate and
+ appends every symbol that has started playing since the last check.
  */
 class TextToAudioProcessor extends SwingWorker<Void, String> {
 
@@ -16,6 +20,11 @@ class TextToAudioProcessor extends SwingWorker<Void, String> {
     private final String input;
     private final JFrame converterWindow;
     Exception exception = null;
+    //Time between updates of the text while following playback (msec), ~60 Hz
+    private static final int REFRESH_MILLIS = 16;
+    private Timer refreshTimer = null;
+    //Symbols of the schedule already appended
+    private int symbolsShown = 0;
     
     public TextToAudioProcessor(String input, JFrame converterWindow, JButton convertButton, JTextArea outputText, TextToAudio tta) {
         this.convertButton = convertButton;
@@ -73,6 +82,37 @@ class TextToAudioProcessor extends SwingWorker<Void, String> {
         }
     }
 
+    /**
+     * Starts following the playback of a transmission, appending each symbol
+     * to outputText once the line has started playing it. Can be called from
+     * any thread; the updates happen on the event dispatch thread.
+     * @param schedule the symbols and the sample each one starts at
+     * @param feeder the feeder playing the transmission
+     */
+    void followPlayback(PlaybackSchedule schedule, LineFeeder feeder) {
+        SwingUtilities.invokeLater(() -> {
+            symbolsShown = 0;
+            refreshTimer = new Timer(REFRESH_MILLIS, e -> showPlayed(schedule, feeder));
+            refreshTimer.start();
+        });
+    }
+
+    /**
+     * Appends the symbols that have started playing since the last update, and
+     * stops updating once playing is over.
+     */
+    private void showPlayed(PlaybackSchedule schedule, LineFeeder feeder) {
+        boolean over = feeder.isDone();
+        int started = schedule.symbolsStartedBy(feeder.getPlayedFrames());
+        if (started > symbolsShown) {
+            outputText.append(schedule.getSymbols(symbolsShown, started));
+            symbolsShown = started;
+        }
+        if (over) {
+            refreshTimer.stop();
+        }
+    }
+
     /**
      * Renamed SwingWorker's publish method for better readability,
      * calls process method 
@@ -16,6 +16,8 @@ public class TextToAudioWindow extends javax.swing.JFrame {
 
     public int defaultWPM = 20;
     public int defaultFrequency = 1000;
+    //Shared by every conversion, since TextToMorse is immutable
+    private static final TextToMorse ttm = new TextToMorse();
     /**
      * Creates new form MorseToAudioWindow
      */
@@ -250,7 +252,6 @@ public class TextToAudioWindow extends javax.swing.JFrame {
     }//GEN-LAST:event_defaultsButtonActionPerformed
 
     private void convertButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_convertButtonActionPerformed
-        TextToMorse ttm = new TextToMorse();
         TextToAudio mta = new TextToAudio();
         
         String input = inputArea.getText();
@@ -1,8 +1,9 @@
 package MorseCodeConverter;
 
-import java.util.Arrays;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Given an input string, converts to text to Morse code (or vice versa), and
@@ -11,19 +12,19 @@ import java.util.regex.Pattern;
  * NOTE: Corresponding entries to the letters and Morse arrays should have the 
  * same index. Uncomment displayArrays() in toString() method to see how they pair up.
  * 
- * BUG FIXES: 
- * first .-.-.- (".") is interpreted as starting signal (-.-.-) if there is none
+ * A TextToMorse is immutable (the lookup tables are built once and shared), so
+ * one instance can be used by any number of threads at once.
  * 
  * @author Jacob White
  */
-public class TextToMorse {
+public final class TextToMorse {
     //These arrays MUST have the same number of indices (use displayArrays() for debug, commented in toString())
-    String[] letters = {"A", "B", "C", "D", "E", "F", "G", "H", "I", "J", "K", 
+    private static final String[] letters = {"A", "B", "C", "D", "E", "F", "G", "H", "I", "J", "K", 
         "L", "M", "N", "O", "P", "Q", "R", "S", "T", "U", "V", "W", "X", "Y", 
         "Z", "0", "1", "2", "3", "4", "5", "6", "7", "8", "9", ".", ",", "?", 
         "\'", "!", "/", "(", ")", "&", ":", ";", "=", "+", "-", "_", "\"", "$", 
         "@", " ", " ", "\n"};
-    String[] morse = {".-", "-...", "-.-.", "-..", ".", "..-.", "--.", "....", 
+    private static final String[] morse = {".-", "-...", "-.-.", "-..", ".", "..-.", "--.", "....", 
         "..", ".---", "-.-", ".-..",  "--", "-.", "---", ".--.", "--.-", ".-.", 
         "...", "-", "..-", "...-", ".--", "-..-", "-.--", "--..", "-----", 
         ".----", "..---", "...--",  "....-", ".....", "-....", "--...", "---..",
@@ -31,9 +32,110 @@ public class TextToMorse {
         "-.--.", "-.--.-", ".-...", "---...", "-.-.-.", "-...-", ".-.-.", 
         "-....-", "..--.-", ".-..-.", "...-..-", ".--.-.", "|", "/", ".-.-"};
     
-    //Starting and ending transmission signals for Morse code (DO NOT CHANGE, will break msgMatcher)
-    String start = "-.-.-";
-    String end = "...-.-";
+    //Starting and ending transmission signals for Morse code (DO NOT CHANGE, will break TransmissionFramer)
+    static final String start = "-.-.-";
+    static final String end = "...-.-";
+    //Sent in place of an invalid character that has no replacement in the code table
+    static final String ERROR_SIGNAL = "........";
+    
+    //Checked once, since the arrays never change
+    private static final boolean arraysMatch = (letters.length == morse.length);
+    
+    //International Morse code, compiled from the arrays above
+    public static final CodeTable INTERNATIONAL = CodeTable.compile("International", letters, morse);
+    
+    //Messages at least this long (in characters) are split up and converted in parallel
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 1 << 18;
+    //Smallest chunk worth handing to another thread
+    private static final int MIN_CHUNK_LENGTH = 1 << 14;
+    private final int parallelThreshold;
+    private final CodeTable table;
+    
+    //Longest message (or word) whose Morse code is cached
+    private static final int MAX_CACHED_MESSAGE_LENGTH = 256;
+    private static final int MAX_CACHED_WORD_LENGTH = 32;
+    //Morse code of recently converted messages and words, or null if not caching
+    private final MorseCache messageCache;
+    private final MorseCache wordCache;
+    
+    /**
+     * Creates an International Morse code converter that converts messages 
+     * longer than DEFAULT_PARALLEL_THRESHOLD in parallel.
+     */
+    public TextToMorse() {
+        this(INTERNATIONAL, DEFAULT_PARALLEL_THRESHOLD);
+    }
+    
+    /**
+     * Creates an International Morse code converter that splits messages of at
+     * least parallelThreshold characters into chunks and converts them on the 
+     * common ForkJoinPool. Use Integer.MAX_VALUE to always convert sequentially.
+     * 
+     * @param parallelThreshold length at which messages are converted in parallel
+     */
+    public TextToMorse(int parallelThreshold) {
+        this(INTERNATIONAL, parallelThreshold);
+    }
+    
+    /**
+     * Creates a converter for the given code table.
+     * 
+     * @param table letters and their Morse code (e.g. CodeTable.load("Greek"))
+     */
+    public TextToMorse(CodeTable table) {
+        this(table, DEFAULT_PARALLEL_THRESHOLD);
+    }
+    
+    /**
+     * Creates a converter for the given code table that converts messages of
+     * at least parallelThreshold characters in parallel.
+     * 
+     * @param table letters and their Morse code
+     * @param parallelThreshold length at which messages are converted in parallel
+     */
+    public TextToMorse(CodeTable table, int parallelThreshold) {
+        this(table, parallelThreshold, 0);
+    }
+    
+    /**
+     * Creates a converter for the given code table that converts messages of
+     * at least parallelThreshold characters in parallel, and remembers the 
+     * Morse code of the last cacheSize messages and words it converted to 
+     * Morse code.
+     * 
+     * @param table letters and their Morse code
+     * @param parallelThreshold length at which messages are converted in parallel
+     * @param cacheSize number of messages (and words) to cache, or 0 for no cache
+     */
+    public TextToMorse(CodeTable table, int parallelThreshold, int cacheSize) {
+        this.table = table;
+        this.parallelThreshold = parallelThreshold;
+        this.messageCache = (cacheSize > 0) ? new MorseCache(cacheSize) : null;
+        this.wordCache = (cacheSize > 0) ? new MorseCache(cacheSize) : null;
+    }
+    
+    /**
+     * @return the code table used by this converter
+     */
+    public CodeTable getCodeTable() {
+        return table;
+    }
+    
+    /**
+     * @return the cache of whole messages converted to Morse code, or null if
+     * this converter doesn't cache
+     */
+    public MorseCache getMessageCache() {
+        return messageCache;
+    }
+    
+    /**
+     * @return the cache of words converted to Morse code, or null if this 
+     * converter doesn't cache
+     */
+    public MorseCache getWordCache() {
+        return wordCache;
+    }
     
 /**
  * Converts a character from text to Morse code.
@@ -44,14 +146,39 @@ public class TextToMorse {
  * contain character/Morse combo
  */
 public String charToMorse(String str) throws InvalidCharacterException {
-    int letterIndex = Arrays.asList(letters).indexOf(str);
-    if (letterIndex >= 0) {
-        String m = morse[letterIndex];
-        return m;
+    if (!str.isEmpty() && str.codePointCount(0, str.length()) == 1) {
+        return codePointToMorse(str.codePointAt(0));
     }
-    else {
-        throw new InvalidCharacterException(str);
+    throw new InvalidCharacterException(str);
+}
+
+/**
+ * Converts a character from text to Morse code with a single table lookup.
+ * 
+ * @param c the character
+ * @return String of Morse code
+ * @throws MorseCodeConverter.InvalidCharacterException if letters array doesn't 
+ * contain character/Morse combo
+ */
+public String charToMorse(char c) throws InvalidCharacterException {
+    return codePointToMorse(c);
+}
+
+/**
+ * Converts a Unicode code point (which may be outside of the Basic 
+ * Multilingual Plane) from text to Morse code with a single table lookup.
+ * 
+ * @param codePoint the letter
+ * @return String of Morse code
+ * @throws MorseCodeConverter.InvalidCharacterException if the code table 
+ * doesn't contain the letter
+ */
+public String codePointToMorse(int codePoint) throws InvalidCharacterException {
+    String code = table.encode(codePoint);
+    if (code == null) {
+        throw new InvalidCharacterException(new String(Character.toChars(codePoint)));
     }
+    return code;
 }
 
 /**
@@ -63,21 +190,88 @@ public String charToMorse(String str) throws InvalidCharacterException {
  * contain character/Morse combination.
  */
 public String morseToWord(String word) throws InvalidCharacterException {
-    String[] lettersInWord = word.split(" +");
-    String out = "";
-    for (String letter: lettersInWord) {
-        int morseIndex = Arrays.asList(morse).indexOf(letter);
-        
-        //If the index is valid (Morse letter is in the morse array)
-        if (morseIndex != -1) {
-            out += letters[morseIndex];
+    StringBuilder out = new StringBuilder(word.length() / 2 + 1);
+    checkLetter(word, decode(word, 0, word.length(), out, null), true);
+    return out.toString();
+}
+
+/**
+ * Decodes the Morse letters (separated by whitespace) between the given 
+ * indices, appending the text to out. Each letter is packed into its key as 
+ * it is read, so no substrings are created.
+ * 
+ * @param s Morse code
+ * @param from index of the first character to decode
+ * @param to index after the last character to decode
+ * @param out where the text is appended
+ * @param errors where invalid letters are recorded (replacing them in the 
+ * output), or null to stop at the first invalid letter
+ * @return index of the first invalid letter if decoding stopped there, or -1
+ */
+int decode(CharSequence s, int from, int to, StringBuilder out, ConversionErrors errors) {
+    int letterStart = -1;
+    int key = 1;
+    int length = 0;
+    boolean valid = true;
+    for (int i = from; i <= to; i++) {
+        char c = (i < to) ? s.charAt(i) : ' ';
+        if (Character.isWhitespace(c)) {
+            if (letterStart >= 0) {
+                int letter = valid ? table.decode(key) : -1;
+                if (!valid && length == 1) {
+                    letter = table.decodeSymbol(s.charAt(letterStart));
+                }
+                if (letter < 0) {
+                    if (errors == null) {
+                        return letterStart;
+                    }
+                    errors.add(letterStart);
+                    letter = errors.getReplacement();
+                }
+                out.appendCodePoint(letter);
+                letterStart = -1;
+                key = 1;
+                length = 0;
+                valid = true;
+            }
+            continue;
+        }
+        if (letterStart < 0) {
+            letterStart = i;
+        }
+        length++;
+        if (c == '.' && length <= CodeTable.MAX_CODE_LENGTH) {
+            key = key << 1;
+        }
+        else if (c == '-' && length <= CodeTable.MAX_CODE_LENGTH) {
+            key = (key << 1) | 1;
         }
         else {
-            throw new InvalidCharacterException(letter);
+            valid = false;
         }
     }
-    return out;
-    
+    return -1;
+}
+
+/**
+ * Throws the exception for an invalid letter found by a strict conversion.
+ * 
+ * @param input text or Morse code
+ * @param invalidIndex index of the invalid letter, or -1 if there was none
+ * @param decoding true if the input is Morse code
+ * @throws InvalidCharacterException if there is an invalid letter
+ */
+private static void checkLetter(CharSequence input, int invalidIndex, boolean decoding) throws InvalidCharacterException {
+    if (invalidIndex < 0) {
+        return;
+    }
+    int end = invalidIndex + Character.charCount(Character.codePointAt(input, invalidIndex));
+    if (decoding) {
+        while (end < input.length() && !Character.isWhitespace(input.charAt(end))) {
+            end++;
+        }
+    }
+    throw new InvalidCharacterException(input.subSequence(invalidIndex, end).toString());
 }
 
      /**
@@ -90,34 +284,118 @@ public String morseToWord(String word) throws InvalidCharacterException {
      * @throws MorseCodeConverter.InvalidTransmissionException if starting and ending signals aren't present and placed correctly
      */
     public String toString(String input) throws InvalidTransmissionException, InvalidCharacterException, InvalidArraysException {
-        checkArrays();
+        if (!arraysMatch) {
+            checkArrays();
+        }
         //Uncomment to show how each letter matches which morse character
 //        displayArrays();
-        String transmission = input.toUpperCase();
-        
-        //If the input doesn't just contain one or more morse characters (|/.- and whitespace)
-        String textPattern = "[^\\-\\s.\\|/]";
-        boolean isText = Pattern.compile(textPattern).matcher(transmission).find(); 
-        if (!isText) {
-            //Replace each instance of one or more whitespace
-            transmission= transmission.replaceAll("\\s+", " ");
-            //Pattern to find the message between starting/ending signals
-            Matcher msgMatcher = Pattern.compile(".*([^.\\-]?)-\\.-\\.- (.*?) \\.\\.\\.-\\.-").matcher(transmission);
-            if (msgMatcher.find()) {
+        if (isMorse(input)) {
+            //Find the message between starting/ending signals
+            TransmissionFramer framer = new TransmissionFramer(input);
+            if (framer.find()) {
                 //Takes the included Morse message and converts to text
-                String output = morseToText(msgMatcher.group(2));
-                return output;
+                StringBuilder output = new StringBuilder(decodedCapacity(framer.messageEnd() - framer.messageStart()));
+                checkLetter(input, convert(input, framer.messageStart(), framer.messageEnd(), true, output, null), true);
+                return output.toString();
             }
             else {
                 throw new InvalidTransmissionException();
             }
         }
         else { //input is text
-            String output = textToMorse(transmission);
+            String output = textToMorse(input.toUpperCase());
             return output;
         }
     }
     
+    /**
+     * Evaluates whether the input string is text or Morse code & converts 
+     * message, replacing invalid letters instead of throwing an exception.
+     * 
+     * @param input text or Morse code
+     * @param errors where the index of each invalid letter (in the input, or
+     * in the upper-cased input for text) is recorded
+     * @return the converted message
+     * @throws MorseCodeConverter.InvalidArraysException
+     * @throws MorseCodeConverter.InvalidTransmissionException if starting and ending signals aren't present and placed correctly
+     */
+    public String toString(String input, ConversionErrors errors) throws InvalidTransmissionException, InvalidArraysException {
+        if (!arraysMatch) {
+            checkArrays();
+        }
+        if (isMorse(input)) {
+            TransmissionFramer framer = new TransmissionFramer(input);
+            if (framer.find()) {
+                StringBuilder output = new StringBuilder(decodedCapacity(framer.messageEnd() - framer.messageStart()));
+                convert(input, framer.messageStart(), framer.messageEnd(), true, output, errors);
+                return output.toString();
+            }
+            else {
+                throw new InvalidTransmissionException();
+            }
+        }
+        else {
+            return textToMorse(input.toUpperCase(), errors);
+        }
+    }
+    
+    /**
+     * Converts each input (text or Morse code) as toString would, in order.
+     * 
+     * @param inputs the messages to convert
+     * @return the converted messages
+     * @throws MorseCodeConverter.InvalidCharacterException
+     * @throws MorseCodeConverter.InvalidArraysException
+     * @throws MorseCodeConverter.InvalidTransmissionException if a Morse code input has no transmission
+     */
+    public List<String> toStrings(Iterable<String> inputs) throws InvalidTransmissionException, InvalidCharacterException, InvalidArraysException {
+        List<String> outputs = (inputs instanceof Collection) ? new ArrayList<>(((Collection<?>) inputs).size()) : new ArrayList<>();
+        for (String input: inputs) {
+            outputs.add(toString(input));
+        }
+        return outputs;
+    }
+    
+    /**
+     * Converts every transmission (message between starting and ending 
+     * signals) in the Morse code input to text, in order.
+     * 
+     * @param input Morse code containing one or more transmissions
+     * @return the text of each transmission
+     * @throws InvalidCharacterException
+     * @throws InvalidTransmissionException if there is no transmission
+     */
+    public List<String> transmissionsToText(String input) throws InvalidCharacterException, InvalidTransmissionException {
+        List<String> messages = new ArrayList<>();
+        TransmissionFramer framer = new TransmissionFramer(input);
+        while (framer.find()) {
+            StringBuilder output = new StringBuilder(decodedCapacity(framer.messageEnd() - framer.messageStart()));
+            checkLetter(input, convert(input, framer.messageStart(), framer.messageEnd(), true, output, null), true);
+            messages.add(output.toString());
+        }
+        if (messages.isEmpty()) {
+            throw new InvalidTransmissionException();
+        }
+        return messages;
+    }
+    
+    /**
+     * Checks whether the input only contains Morse code characters (dots, 
+     * dashes, word separators and whitespace).
+     * 
+     * @param input text or Morse code
+     * @return true if the input is Morse code
+     */
+    public static boolean isMorse(CharSequence input) {
+        for (int i = 0; i < input.length(); i++) {
+            char c = input.charAt(i);
+            if (c != '.' && c != '-' && c != '|' && c != '/' && !Character.isWhitespace(c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
     /**
      * Checks to see if the letters and Morse arrays are of the same length.
      * If not, there is an array mismatch.
@@ -161,14 +439,250 @@ public String morseToWord(String word) throws InvalidCharacterException {
      * @throws InvalidCharacterException 
      */
     public String textToMorse(String text) throws InvalidCharacterException {
-        char[] charArray = text.toCharArray();
-        String output = start + " ";
-        for(char c: charArray) {
-            output += charToMorse("" + c);
-            output += " "; //add spaces between "letters" of Morse code
+        if (messageCache != null && text.length() <= MAX_CACHED_MESSAGE_LENGTH) {
+            String cached = messageCache.get(text);
+            if (cached == null) {
+                StringBuilder sb = new StringBuilder(encodedLength(text));
+                textToMorse(text, sb);
+                cached = sb.toString();
+                messageCache.put(text, cached);
+            }
+            return cached;
+        }
+        if (text.length() >= parallelThreshold) {
+            StringBuilder output = new StringBuilder();
+            textToMorse(text, output);
+            return output.toString();
+        }
+        StringBuilder output = new StringBuilder(encodedLength(text));
+        textToMorse(text, output);
+        return output.toString();
+    }
+    
+    /**
+     * For each character in the text, attempt to convert text to Morse code,
+     * appending the transmission (with starting and ending signals) to output.
+     * Throw error if invalid character.
+     * @param text the message
+     * @param output where the Morse code is appended
+     * @throws InvalidCharacterException 
+     */
+    public void textToMorse(CharSequence text, StringBuilder output) throws InvalidCharacterException {
+        int length = output.length();
+        int invalidIndex = textToMorse(text, output, null);
+        if (invalidIndex >= 0) {
+            output.setLength(length);
+            checkLetter(text, invalidIndex, false);
+        }
+    }
+    
+    /**
+     * For each character in the text, convert text to Morse code, replacing
+     * invalid characters instead of throwing an exception.
+     * @param text the message
+     * @param errors where the index of each invalid character is recorded
+     * @return String output (morse code)
+     */
+    public String textToMorse(String text, ConversionErrors errors) {
+        StringBuilder output = new StringBuilder(text.length() >= parallelThreshold ? 16 : text.length() * 5);
+        textToMorse(text, output, errors);
+        return output.toString();
+    }
+    
+    /**
+     * For each character in the text, convert text to Morse code, appending 
+     * the transmission (with starting and ending signals) to output.
+     * @param text the message
+     * @param output where the Morse code is appended
+     * @param errors where invalid characters are recorded (replacing them in
+     * the output), or null to stop at the first invalid character
+     * @return index of the first invalid character if conversion stopped there, or -1
+     */
+    public int textToMorse(CharSequence text, StringBuilder output, ConversionErrors errors) {
+        output.append(start).append(' ');
+        int invalidIndex = convert(text, 0, text.length(), false, output, errors);
+        output.append(end); // End of Transmission Signal
+        return invalidIndex;
+    }
+    
+    /**
+     * Converts each character between the given indices to Morse code, 
+     * appending each letter of Morse code followed by a space.
+     * @param text the message
+     * @param from index of the first character to convert
+     * @param to index after the last character to convert
+     * @param output where the Morse code is appended
+     * @param errors where invalid characters are recorded (replacing them in 
+     * the output), or null to stop at the first invalid character
+     * @return index of the first invalid character if encoding stopped there, or -1
+     */
+    int encode(CharSequence text, int from, int to, StringBuilder output, ConversionErrors errors) {
+        if (wordCache == null) {
+            return encodeLetters(text, from, to, output, errors);
+        }
+        int i = from;
+        while (i < to) {
+            int wordEnd = i;
+            while (wordEnd < to && !Character.isWhitespace(text.charAt(wordEnd))) {
+                wordEnd++;
+            }
+            if (wordEnd == i || wordEnd - i > MAX_CACHED_WORD_LENGTH) {
+                //Whitespace (or a long word) is converted a letter at a time
+                int letterEnd = (wordEnd == i) ? i + 1 : wordEnd;
+                int invalidIndex = encodeLetters(text, i, letterEnd, output, errors);
+                if (invalidIndex >= 0) {
+                    return invalidIndex;
+                }
+                i = letterEnd;
+                continue;
+            }
+            String word = text.subSequence(i, wordEnd).toString();
+            String cached = wordCache.get(word);
+            if (cached != null) {
+                output.append(cached);
+            }
+            else {
+                int length = output.length();
+                int errorCount = (errors == null) ? 0 : errors.size();
+                int invalidIndex = encodeLetters(text, i, wordEnd, output, errors);
+                if (invalidIndex >= 0) {
+                    return invalidIndex;
+                }
+                //Words with replaced letters aren't cached, so later conversions still report them
+                if (errors == null || errors.size() == errorCount) {
+                    wordCache.put(word, output.substring(length));
+                }
+            }
+            i = wordEnd;
+        }
+        return -1;
+    }
+    
+    /**
+     * Converts each character between the given indices to Morse code using
+     * the code table alone (see encode).
+     */
+    private int encodeLetters(CharSequence text, int from, int to, StringBuilder output, ConversionErrors errors) {
+        for (int i = from; i < to; ) {
+            int codePoint = Character.codePointAt(text, i);
+            String code = table.encode(codePoint);
+            if (code == null) {
+                if (errors == null) {
+                    return i;
+                }
+                errors.add(i);
+                code = table.encode(errors.getReplacement());
+                if (code == null) {
+                    code = ERROR_SIGNAL;
+                }
+            }
+            output.append(code);
+            output.append(' '); //add spaces between "letters" of Morse code
+            i += Character.charCount(codePoint);
         }
-        output += end; // End of Transmission Signal
-        return output;
+        return -1;
+    }
+    
+    /**
+     * Encodes (or decodes) the input between the given indices. If there are at
+     * least parallelThreshold characters, the input is split at whitespace 
+     * (or at word separators when decoding) and the chunks are converted on 
+     * the common ForkJoinPool, then appended in order.
+     * @param input text or Morse code
+     * @param from index of the first character to convert
+     * @param to index after the last character to convert
+     * @param decoding true if the input is Morse code
+     * @param output where the converted message is appended
+     * @param errors where invalid letters are recorded, or null to stop at the
+     * first invalid letter
+     * @return index of the first invalid letter if conversion stopped there, or -1
+     */
+    private int convert(CharSequence input, int from, int to, boolean decoding, StringBuilder output, ConversionErrors errors) {
+        if (to - from < parallelThreshold) {
+            if (decoding) {
+                return decode(input, from, to, output, errors);
+            }
+            else {
+                return encode(input, from, to, output, errors);
+            }
+        }
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        int chunkLength = Math.max((to - from) / (4 * pool.getParallelism()), MIN_CHUNK_LENGTH);
+        List<MorseChunkTask> chunks = new ArrayList<>();
+        int chunkStart = from;
+        while (chunkStart < to) {
+            int chunkEnd = splitPoint(input, chunkStart + chunkLength, to, decoding);
+            ConversionErrors chunkErrors = (errors == null) ? null : new ConversionErrors(errors.getReplacement());
+            MorseChunkTask chunk = new MorseChunkTask(this, input, chunkStart, chunkEnd, decoding, chunkErrors);
+            pool.execute(chunk);
+            chunks.add(chunk);
+            chunkStart = chunkEnd;
+        }
+        int length = 0;
+        for (MorseChunkTask chunk: chunks) {
+            chunk.join();
+            length += chunk.output.length();
+        }
+        output.ensureCapacity(output.length() + length);
+        for (MorseChunkTask chunk: chunks) {
+            if (chunk.invalidIndex >= 0) {
+                return chunk.invalidIndex;
+            }
+            output.append(chunk.output);
+            if (errors != null) {
+                errors.addAll(chunk.errors);
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Returns the capacity to allocate for decoding Morse code of the given 
+     * length. Parallel conversions size the output once the chunks are done.
+     */
+    private int decodedCapacity(int morseLength) {
+        if (morseLength >= parallelThreshold) {
+            return 16;
+        }
+        //Every letter takes at least one symbol and one separator
+        return morseLength / 2 + 1;
+    }
+    
+    /**
+     * Finds the first index at or after from where the input can be split 
+     * without breaking up a Morse letter: the start of a word separator when 
+     * decoding, or whitespace when encoding. Returns to if there is none.
+     */
+    private static int splitPoint(CharSequence input, int from, int to, boolean decoding) {
+        for (int i = from; i < to; i++) {
+            char c = input.charAt(i);
+            if (decoding) {
+                if ((c == '|' || c == '/') && Character.isWhitespace(input.charAt(i - 1))) {
+                    return i;
+                }
+            }
+            else if (Character.isWhitespace(c)) {
+                return i;
+            }
+        }
+        return to;
+    }
+    
+    /**
+     * Calculates the length of the Morse code transmission that textToMorse 
+     * produces for the text, so the output can be allocated up front.
+     * @param text the message
+     * @return number of characters in the Morse code transmission
+     * @throws InvalidCharacterException 
+     */
+    public int encodedLength(CharSequence text) throws InvalidCharacterException {
+        int length = start.length() + 1 + end.length();
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = Character.codePointAt(text, i);
+            length += codePointToMorse(codePoint).length() + 1;
+            i += Character.charCount(codePoint);
+        }
+        return length;
     }
     
     /**
@@ -179,15 +693,51 @@ public String morseToWord(String word) throws InvalidCharacterException {
      * @throws InvalidCharacterException 
      */
     public String morseToText(String s) throws InvalidCharacterException {
-        String output = "";
-        String[] morseWords = s.split("\\s*[|/]//s*");
-        for (int i = 0; i < morseWords.length; i++) {
-            if (i != 0) {
-                output += " ";
-            }
-            output += morseToWord(morseWords[i]);
+        StringBuilder output = new StringBuilder(decodedCapacity(s.length()));
+        morseToText(s, output);
+        return output.toString();
+    }
+    
+    /**
+     * For each string of Morse characters, attempt to convert Morse code to text,
+     * appending the text to output. Word separators ("|" or "/") become spaces.
+     * Throw error if invalid character
+     * @param s Morse code message
+     * @param output where the text is appended
+     * @throws InvalidCharacterException 
+     */
+    public void morseToText(CharSequence s, StringBuilder output) throws InvalidCharacterException {
+        int length = output.length();
+        int invalidIndex = convert(s, 0, s.length(), true, output, null);
+        if (invalidIndex >= 0) {
+            output.setLength(length);
+            checkLetter(s, invalidIndex, true);
         }
-        return output;
+    }
+    
+    /**
+     * For each string of Morse characters, convert Morse code to text, 
+     * replacing invalid letters instead of throwing an exception.
+     * @param s Morse code message
+     * @param errors where the index of each invalid letter is recorded
+     * @return output (text as String)
+     */
+    public String morseToText(String s, ConversionErrors errors) {
+        StringBuilder output = new StringBuilder(decodedCapacity(s.length()));
+        morseToText(s, output, errors);
+        return output.toString();
+    }
+    
+    /**
+     * For each string of Morse characters, convert Morse code to text,
+     * appending the text to output.
+     * @param s Morse code message
+     * @param output where the text is appended
+     * @param errors where invalid letters are recorded (replacing them in the
+     * output), or null to stop at the first invalid letter
+     * @return index of the first invalid letter if conversion stopped there, or -1
+     */
+    public int morseToText(CharSequence s, StringBuilder output, ConversionErrors errors) {
+        return convert(s, 0, s.length(), true, output, errors);
     }
 }
-
@@ -12,6 +12,9 @@ import javax.swing.JOptionPane;
  */
 public class TextToMorseWindow extends javax.swing.JFrame {
 
+    //Shared by every conversion, since TextToMorse is immutable
+    private static final TextToMorse ttm = new TextToMorse();
+
     /**
      * Creates new form TextToMorseWindow
      */
@@ -154,7 +157,6 @@ public class TextToMorseWindow extends javax.swing.JFrame {
     }// </editor-fold>//GEN-END:initComponents
 
     private void convertButtonActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_convertButtonActionPerformed
-        TextToMorse ttm = new TextToMorse();
         String input = inputArea.getText(); //Input message in text
         String output;
         try {
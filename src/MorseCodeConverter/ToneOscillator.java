@@ -0,0 +1,92 @@
+package MorseCodeConverter;
+
+/**
+ * Sine wave oscillator that steps a 32 bit phase accumulator through a shared
+ * wavetable, so each sample costs a table lookup and a linear interpolation
+ * instead of a call to Math.sin. The phase is kept between tones (and can be
+ * advanced through silences with skip), so consecutive tones carry on from
+ * where the last one stopped instead of restarting the wave.
+ *
+ * The frequency is exact to within sampleRate / 2^32 Hz, so frequencies that
+ * don't divide the sample rate evenly play at the right pitch.
+ *
+ * @author Jacob White
+ */
+public final class ToneOscillator {
+    private static final int TABLE_BITS = 10;
+    private static final int TABLE_SIZE = 1 << TABLE_BITS;
+    //Bits of the phase below the table index, used to interpolate
+    private static final int FRACTION_BITS = 32 - TABLE_BITS;
+    private static final double FRACTION_SCALE = 1.0 / (1 << FRACTION_BITS);
+    //One period of a sine wave, with the first entry repeated at the end
+    private static final double[] SINE = buildSineTable();
+
+    private final int phaseIncrement;
+    private int phase = 0;
+
+    /**
+     * @param hz frequency of the tone
+     * @param sampleRate samples per second
+     */
+    public ToneOscillator(double hz, float sampleRate) {
+        //Fraction of a period per sample, as a 32 bit fixed point number
+        phaseIncrement = (int) Math.round(hz / sampleRate * 4294967296.0);
+    }
+
+    private static double[] buildSineTable() {
+        double[] table = new double[TABLE_SIZE + 1];
+        for (int i = 0; i <= TABLE_SIZE; i++) {
+            table[i] = Math.sin(2.0 * Math.PI * i / TABLE_SIZE);
+        }
+        return table;
+    }
+
+    /**
+     * Returns the next sample of the wave and advances the phase.
+     *
+     * @return sample between -1.0 and 1.0
+     */
+    public double next() {
+        int index = phase >>> FRACTION_BITS;
+        double fraction = (phase & ((1 << FRACTION_BITS) - 1)) * FRACTION_SCALE;
+        double sample = SINE[index] + (SINE[index + 1] - SINE[index]) * fraction;
+        phase += phaseIncrement;
+        return sample;
+    }
+
+    /**
+     * Fills part of an array with 8 bit signed samples of the wave.
+     *
+     * @param buf where the samples are written
+     * @param offset index of the first sample
+     * @param length number of samples
+     * @param vol volume between 0.0 and 1.0
+     */
+    public void render(byte[] buf, int offset, int length, double vol) {
+        //127.0 to account for 8-bit audio samples
+        double amplitude = 127.0 * vol;
+        for (int i = offset; i < offset + length; i++) {
+            double sample = next() * amplitude;
+            buf[i] = (byte) (sample < 0 ? (int) (sample - 0.5) : (int) (sample + 0.5));
+        }
+    }
+
+    /**
+     * Advances the phase as if the given number of samples had been played.
+     *
+     * @param samples number of samples to skip
+     */
+    public void skip(long samples) {
+        phase += (int) (phaseIncrement * samples);
+    }
+
+    /**
+     * Sets the phase to where it would be after the given number of samples
+     * from the start of the wave.
+     *
+     * @param sampleIndex number of samples from the start
+     */
+    public void seek(long sampleIndex) {
+        phase = (int) (phaseIncrement * sampleIndex);
+    }
+}
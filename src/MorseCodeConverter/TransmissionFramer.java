@@ -0,0 +1,114 @@
+package MorseCodeConverter;
+
+/**
+ * Finds each Morse code transmission (a message contained by the starting
+ * signal "-.-.-" and the ending signal "...-.-") in a String, in a single pass
+ * and without regular expressions. Used like a Matcher: each call to find()
+ * moves to the next transmission.
+ *
+ * Signals are only recognized as whole Morse letters (separated by whitespace),
+ * so a "." (.-.-.-) is never mistaken for a starting signal. If a second
+ * starting signal appears before the ending signal, the transmission restarts
+ * from there.
+ *
+ * @author Jacob White
+ */
+public class TransmissionFramer {
+    static final int START_KEY = CodeTable.morseKey(TextToMorse.start);
+    static final int END_KEY = CodeTable.morseKey(TextToMorse.end);
+
+    private final CharSequence input;
+    private int position = 0;
+    private int start = -1;
+    private int messageStart = -1;
+    private int messageEnd = -1;
+    private int end = -1;
+
+    public TransmissionFramer(CharSequence input) {
+        this.input = input;
+    }
+
+    /**
+     * Looks for the next transmission after the previous one.
+     *
+     * @return true if a transmission was found
+     */
+    public boolean find() {
+        int length = input.length();
+        int frameStart = -1;
+        int i = position;
+        while (i < length) {
+            //Skip to the start of the next letter
+            while (i < length && Character.isWhitespace(input.charAt(i))) {
+                i++;
+            }
+            int letterStart = i;
+            int key = 1;
+            while (i < length && !Character.isWhitespace(input.charAt(i))) {
+                char c = input.charAt(i);
+                if (key > 0 && (c == '.' || c == '-') && i - letterStart < CodeTable.MAX_CODE_LENGTH) {
+                    key = (key << 1) | (c == '-' ? 1 : 0);
+                }
+                else {
+                    key = -1;
+                }
+                i++;
+            }
+            if (key == START_KEY) {
+                frameStart = letterStart;
+                messageStart = i;
+            }
+            else if (key == END_KEY && frameStart >= 0) {
+                start = frameStart;
+                messageEnd = letterStart;
+                end = i;
+                position = i;
+                return true;
+            }
+        }
+        position = length;
+        start = -1;
+        messageStart = -1;
+        messageEnd = -1;
+        end = -1;
+        return false;
+    }
+
+    /**
+     * @return index of the starting signal of the transmission found
+     */
+    public int start() {
+        checkFound();
+        return start;
+    }
+
+    /**
+     * @return index after the ending signal of the transmission found
+     */
+    public int end() {
+        checkFound();
+        return end;
+    }
+
+    /**
+     * @return index after the starting signal of the transmission found
+     */
+    public int messageStart() {
+        checkFound();
+        return messageStart;
+    }
+
+    /**
+     * @return index of the ending signal of the transmission found
+     */
+    public int messageEnd() {
+        checkFound();
+        return messageEnd;
+    }
+
+    private void checkFound() {
+        if (start < 0) {
+            throw new IllegalStateException("No transmission found");
+        }
+    }
+}